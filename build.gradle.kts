@@ -12,6 +12,13 @@ repositories {
 dependencies {
     // Hytale Server API (compile only - provided at runtime)
     compileOnly(fileTree("libs") { include("*.jar") })
+
+    // Tests load the model classes, which need the server API at runtime
+    testImplementation(fileTree("libs") { include("*.jar") })
+    testImplementation(platform("org.junit:junit-bom:5.11.3"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testImplementation("org.mockito:mockito-core:5.20.0")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
 java {
@@ -27,5 +34,23 @@ tasks.jar {
 }
 
 tasks.test {
-    useJUnitPlatform()
+    useJUnitPlatform {
+        excludeTags("allocation")
+    }
+}
+
+// Allocation harness in its own JVM: it counts what the code allocates, not what escape analysis happens to remove
+val allocationTest by tasks.registering(Test::class) {
+    description = "Runs the allocation tests with escape analysis turned off."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform {
+        includeTags("allocation")
+    }
+    jvmArgs("-XX:-DoEscapeAnalysis")
+}
+
+tasks.check {
+    dependsOn(allocationTest)
 }
@@ -1,17 +1,45 @@
 package com.sl.party;
 
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.plugin.JavaPlugin;
 import com.hypixel.hytale.server.core.plugin.JavaPluginInit;
+import com.hypixel.hytale.server.core.event.events.player.AddPlayerToWorldEvent;
+import com.hypixel.hytale.server.core.event.events.player.PlayerConnectEvent;
 import com.hypixel.hytale.server.core.event.events.player.PlayerDisconnectEvent;
+import com.hypixel.hytale.server.core.event.events.player.PlayerReadyEvent;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.events.AddWorldEvent;
+import com.hypixel.hytale.server.core.universe.world.events.RemoveWorldEvent;
+import com.sl.party.alliance.AllianceManager;
+import com.sl.party.broadcast.BroadcastFlushSystem;
+import com.sl.party.broadcast.PartyBroadcast;
 import com.sl.party.cache.PartyCache;
+import com.sl.party.chat.PartyChatChannel;
 import com.sl.party.command.PartyCommand;
 import com.sl.party.compass.PartyMemberMarkerProvider;
+import com.sl.party.compass.PartyPositionSnapshotSystem;
+import com.sl.party.component.PartyMembershipComponent;
+import com.sl.party.component.PartyMembershipTracker;
+import com.sl.party.config.PartyConfig;
+import com.sl.party.listener.PartyMapFilterListener;
+import com.sl.party.model.Party;
+import com.sl.party.presence.PresenceRegistry;
+import com.sl.party.presence.PresenceSystem;
+import com.sl.party.storage.EvictingPartyStorage;
+import com.sl.party.storage.KeyValuePartyStorage;
+import com.sl.party.storage.PartyPersister;
 import com.sl.party.storage.PartyStorage;
+import com.sl.party.storage.SnapshotPartyStorage;
+import com.sl.party.system.DamageSystemListener;
+import com.sl.party.system.FriendlyFireMemoSystem;
 
 import javax.annotation.Nonnull;
+import java.awt.Color;
 import java.nio.file.Path;
 import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * SLParty - Party system plugin for Hytale
@@ -21,6 +49,11 @@ public class SLPartyPlugin extends JavaPlugin {
 
     private static SLPartyPlugin INSTANCE;
     private PartyCache partyCache;
+    private PartyPersister persister;
+    private PartyConfig config;
+    private AllianceManager alliances;
+    private PartyChatChannel chatChannel;
+    private final PresenceRegistry presence = new PresenceRegistry();
 
     public SLPartyPlugin(@Nonnull JavaPluginInit init) {
         super(init);
@@ -40,41 +73,162 @@ public class SLPartyPlugin extends JavaPlugin {
 
         // Setup persistence - save to mods/SLParty folder
         Path dataFolder = Path.of("mods", "SLParty");
-        PartyStorage storage = new PartyStorage(dataFolder, java.util.logging.Logger.getLogger("SLParty"));
+        Logger storageLogger = Logger.getLogger("SLParty");
+        this.config = PartyConfig.load(dataFolder, storageLogger);
+        PartyStorage storage = createStorage(dataFolder, storageLogger);
         partyCache.setStorage(storage);
+        partyCache.setMaxOfflineParties(config.getCache().getMaxOfflineParties());
+        if (config.getCache().getMaxOfflineParties() >= 0 && !(storage instanceof EvictingPartyStorage)) {
+            storageLogger.log(Level.WARNING, "maxOfflineParties needs the kv storage backend, keeping every party in memory");
+        }
 
         // Load saved parties
         partyCache.load();
 
+        // Write changes in the background, coalesced per flush interval
+        this.persister = new PartyPersister(
+            storage,
+            partyCache::getParties,
+            partyCache::getResidentParty,
+            config.getStorage().getFlushIntervalMs(),
+            config.getStorage().getQueueCapacity(),
+            storageLogger
+        );
+        persister.start();
+        partyCache.setPersister(persister);
+
+        // Party handle on player entities, used by the friendly-fire check
+        PartyMembershipComponent.setComponentType(getEntityStoreRegistry().registerComponent(
+            PartyMembershipComponent.class,
+            PartyMembershipComponent::new
+        ));
+        // Alliances between parties, stored with the parties
+        this.alliances = new AllianceManager(persister, storageLogger);
+        alliances.load(storage.getAlliances());
+        partyCache.addMembershipListener(alliances);
+
+        PartyMembershipTracker membershipTracker = new PartyMembershipTracker(partyCache, alliances);
+        partyCache.addMembershipListener(membershipTracker);
+        alliances.setIndexListener(membershipTracker::refreshParty);
+        getEventRegistry().registerGlobal(
+            AddPlayerToWorldEvent.class,
+            membershipTracker::onPlayerAddedToWorld
+        );
+        getEntityStoreRegistry().registerSystem(new DamageSystemListener(alliances));
+        getEntityStoreRegistry().registerSystem(new FriendlyFireMemoSystem());
+        getEntityStoreRegistry().registerSystem(new PresenceSystem(presence));
+        // A new world means a new map tracker, which starts without our filter
+        presence.setWorldEntryListener(PartyMapFilterListener::updateFilter);
+        getEntityStoreRegistry().registerSystem(new PartyPositionSnapshotSystem());
+        getEntityStoreRegistry().registerSystem(new BroadcastFlushSystem());
+
+        // Party chat runs on its own thread, off the world ticks
+        this.chatChannel = new PartyChatChannel(partyCache, config.getChat(), dataFolder, storageLogger);
+
         // Register commands
-        getCommandRegistry().registerCommand(new PartyCommand(partyCache));
+        getCommandRegistry().registerCommand(new PartyCommand(partyCache, alliances, chatChannel));
 
-        // Register player disconnect listener
+        // Track online players so offline parties can be evicted and loaded back on connect
+        getEventRegistry().register(
+            PlayerConnectEvent.class,
+            this::onPlayerConnect
+        );
         getEventRegistry().register(
             PlayerDisconnectEvent.class,
             this::onPlayerDisconnect
         );
+        // Restore a returning player's map filter and markers as soon as they are in a world
+        getEventRegistry().registerGlobal(
+            PlayerReadyEvent.class,
+            this::onPlayerReady
+        );
 
         // Register marker provider when world is added
         getEventRegistry().registerGlobal(
             AddWorldEvent.class,
             this::onWorldAdded
         );
+        getEventRegistry().registerGlobal(
+            RemoveWorldEvent.class,
+            this::onWorldRemoved
+        );
 
         getLogger().at(Level.INFO).log("SLParty setup complete!");
     }
 
+    private PartyStorage createStorage(Path dataFolder, Logger storageLogger) {
+        PartyConfig.Storage settings = config.getStorage();
+        switch (settings.getBackend()) {
+            case "kv":
+                return new KeyValuePartyStorage(dataFolder, storageLogger, settings.getCompactThresholdBytes());
+            case "file":
+                break;
+            default:
+                storageLogger.log(Level.WARNING, "Unknown storage backend '" + settings.getBackend() + "', using file");
+        }
+        return new SnapshotPartyStorage(
+            dataFolder,
+            storageLogger,
+            settings.isJournal(),
+            settings.getCompactThresholdBytes(),
+            settings.isParallelLoad()
+        );
+    }
+
+    private void onPlayerConnect(PlayerConnectEvent event) {
+        var playerRef = event.getPlayerRef();
+        if (playerRef == null) {
+            return;
+        }
+        // Found through the member index (loaded back from storage if it was evicted), no scans
+        final Party party = partyCache.markOnline(playerRef);
+        if (party == null || party.getPlayers().size() <= 1) return;
+
+        final Message message = Message.raw(playerRef.getUsername() + " is back online").color(Color.GRAY);
+        PartyBroadcast.send(party.getPlayers(), PartyBroadcast.message(message), playerRef.getUuid());
+    }
+
+    private void onPlayerReady(PlayerReadyEvent event) {
+        final Player player = event.getPlayer();
+        if (player == null) return;
+
+        final PlayerRef playerRef = player.getPlayerRef();
+        final World world = player.getWorld();
+        if (playerRef == null || world == null) return;
+
+        // Record the player now rather than on the next presence tick: that installs their map filter
+        // (world entry listener) and puts them in their party's markers in the same step
+        world.execute(() -> presence.update(playerRef, world));
+
+        // What they missed, once the client can show chat
+        final Party party = partyCache.getParty(playerRef.getUuid());
+        if (party != null && chatChannel != null) {
+            chatChannel.replay(playerRef, party);
+        }
+    }
+
     private void onPlayerDisconnect(PlayerDisconnectEvent event) {
         var playerRef = event.getPlayerRef();
         if (playerRef == null) {
             return;
         }
-        partyCache.leaveParty(playerRef.getUuid());
+        partyCache.markOffline(playerRef.getUuid());
+        PartyMemberMarkerProvider.INSTANCE.forgetViewer(playerRef.getUuid());
+        presence.remove(playerRef.getUuid());
+        if (chatChannel != null) {
+            chatChannel.forget(playerRef.getUuid());
+        }
     }
 
     private void onWorldAdded(AddWorldEvent event) {
         event.getWorld().getWorldMapManager()
             .addMarkerProvider("partyMembers", PartyMemberMarkerProvider.INSTANCE);
+        // Broadcasts on the world's thread are queued from now on, BroadcastFlushSystem writes them
+        event.getWorld().execute(PartyBroadcast::startBatching);
+    }
+
+    private void onWorldRemoved(RemoveWorldEvent event) {
+        presence.removeWorld(event.getWorld());
     }
 
     @Override
@@ -85,6 +239,16 @@ public class SLPartyPlugin extends JavaPlugin {
     @Override
     protected void shutdown() {
         getLogger().at(Level.INFO).log("SLParty shutting down...");
+        if (chatChannel != null) {
+            chatChannel.shutdown();
+        }
+        // Stop taking changes first, then write everything that is still pending
+        if (partyCache != null) {
+            partyCache.close();
+        }
+        if (persister != null) {
+            persister.shutdown(config.getStorage().getShutdownTimeoutMs());
+        }
         if (partyCache != null) {
             partyCache.clear();
         }
@@ -93,4 +257,12 @@ public class SLPartyPlugin extends JavaPlugin {
     public PartyCache getPartyCache() {
         return partyCache;
     }
+
+    public PresenceRegistry getPresence() {
+        return presence;
+    }
+
+    public PartyConfig getPartyConfig() {
+        return config;
+    }
 }
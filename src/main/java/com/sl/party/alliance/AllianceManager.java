@@ -0,0 +1,295 @@
+package com.sl.party.alliance;
+
+import com.sl.party.cache.MembershipListener;
+import com.sl.party.model.Party;
+import com.sl.party.storage.PartyPersister;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Alliances between parties. Allied parties are friendly to each other like members of one party.
+ *
+ * Every party in an alliance gets a dense int index; alliances are the sets of a union-find over
+ * those indexes. Changes happen under this object's lock, then a flat index -> root array is
+ * published, so {@link #isAllied(int, int)} is two array reads without locking. Leaving an alliance
+ * can't be expressed as a union, so the sets are rebuilt without the leaving party (alliance changes
+ * are rare). A party that ends up alone gives its index back. A freed index is only reused (oldest
+ * first) once the index listener reports that the party's member entities were refreshed, so a
+ * stale component still holding it can't make two unrelated parties look allied.
+ *
+ * Alliances are stored with the parties: every change hands the current alliances to the
+ * {@link PartyPersister}, which writes them with the next flush.
+ */
+public class AllianceManager implements MembershipListener {
+
+    public static final int NO_ALLIANCE = -1;
+
+    // A request the other leader doesn't answer within a minute is dropped
+    private static final long REQUEST_EXPIRY_MS = 60_000;
+
+    private final PartyPersister persister;
+    private final Logger logger;
+
+    private final Map<UUID, Integer> indexByParty = new HashMap<>();
+    private final List<UUID> partyByIndex = new ArrayList<>();  // null for a free index
+    private final Queue<Integer> freeIndexes = new ArrayDeque<>();
+    private final Map<UUID, Map<UUID, Long>> requests = new HashMap<>();  // Requested party -> requesting party -> time
+    private DisjointSet sets = new DisjointSet();
+    private volatile int[] roots = new int[0];
+
+    private BiConsumer<UUID, Runnable> indexListener = (partyId, refreshed) -> refreshed.run();
+
+    /**
+     * Outcome of an alliance request
+     */
+    public enum RequestResult {
+        REQUESTED,      // Waiting for the other leader
+        FORMED,         // The other party had asked too, now allied
+        ALREADY_ALLIED
+    }
+
+    public AllianceManager(PartyPersister persister, Logger logger) {
+        this.persister = persister;
+        this.logger = logger;
+    }
+
+    /**
+     * Called with a party id when the party gets or loses its alliance index, so member entities can be updated.
+     * The listener runs the given callback once they are (also when nothing had to be updated).
+     */
+    public void setIndexListener(BiConsumer<UUID, Runnable> indexListener) {
+        this.indexListener = indexListener;
+    }
+
+    /**
+     * Alliance index of the party, or {@link #NO_ALLIANCE} if it isn't allied
+     */
+    public synchronized int indexOf(UUID partyId) {
+        Integer index = indexByParty.get(partyId);
+        return index != null ? index : NO_ALLIANCE;
+    }
+
+    /**
+     * Whether the parties with these alliance indexes are allied. Lock-free.
+     */
+    public boolean isAllied(int indexA, int indexB) {
+        if (indexA < 0 || indexB < 0) return false;
+        int[] current = roots;
+        return indexA < current.length && indexB < current.length && current[indexA] == current[indexB];
+    }
+
+    /**
+     * Asks {@code to} for an alliance; forms it if {@code to} asked {@code from} within the last minute
+     */
+    public RequestResult requestAlliance(UUID from, UUID to) {
+        List<UUID> indexed = new ArrayList<>();
+        RequestResult result;
+        synchronized (this) {
+            if (isAllied(indexOf(from), indexOf(to))) {
+                return RequestResult.ALREADY_ALLIED;
+            }
+
+            long now = System.currentTimeMillis();
+            expireRequests(now);
+            Map<UUID, Long> askedFrom = requests.get(from);
+            if (askedFrom == null || askedFrom.remove(to) == null) {
+                requests.computeIfAbsent(to, key -> new HashMap<>()).put(from, now);
+                return RequestResult.REQUESTED;
+            }
+            if (askedFrom.isEmpty()) {
+                requests.remove(from);
+            }
+
+            int indexFrom = index(from, indexed);
+            int indexTo = index(to, indexed);
+            sets.union(indexFrom, indexTo);
+            publish();
+            result = RequestResult.FORMED;
+        }
+        for (UUID partyId : indexed) {
+            indexListener.accept(partyId, () -> {
+            });
+        }
+        return result;
+    }
+
+    private void expireRequests(long now) {
+        Iterator<Map<UUID, Long>> iterator = requests.values().iterator();
+        while (iterator.hasNext()) {
+            Map<UUID, Long> requesting = iterator.next();
+            requesting.values().removeIf(time -> now - time > REQUEST_EXPIRY_MS);
+            if (requesting.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private int index(UUID partyId, List<UUID> indexed) {
+        Integer index = indexByParty.get(partyId);
+        if (index != null) return index;
+
+        // A free index is a singleton set already
+        Integer added = freeIndexes.poll();
+        if (added != null) {
+            partyByIndex.set(added, partyId);
+        } else {
+            added = sets.add();
+            partyByIndex.add(partyId);
+        }
+        indexByParty.put(partyId, added);
+        indexed.add(partyId);
+        return added;
+    }
+
+    /**
+     * Takes the party out of its alliance. Returns false if it wasn't in one.
+     */
+    public boolean leave(UUID partyId) {
+        Map<UUID, Integer> freed = new LinkedHashMap<>();
+        synchronized (this) {
+            if (!leave(partyId, freed)) return false;
+        }
+        notifyIndexChanged(freed);
+        return true;
+    }
+
+    private boolean leave(UUID partyId, Map<UUID, Integer> freed) {
+        int index = indexOf(partyId);
+        if (index == NO_ALLIANCE) return false;
+
+        // Rebuild the sets from the current groups, leaving this party on its own
+        int[] current = sets.roots();
+        DisjointSet rebuilt = new DisjointSet();
+        Map<Integer, Integer> firstOfGroup = new HashMap<>();
+        Map<Integer, Integer> groupSize = new HashMap<>();
+        for (int i = 0; i < current.length; i++) {
+            rebuilt.add();
+            if (i == index) continue;
+            groupSize.merge(current[i], 1, Integer::sum);
+            Integer first = firstOfGroup.putIfAbsent(current[i], i);
+            if (first != null) {
+                rebuilt.union(first, i);
+            }
+        }
+        sets = rebuilt;
+
+        // The leaving party and anyone left alone give their index back (reused once they are refreshed)
+        for (int i = 0; i < current.length; i++) {
+            UUID member = partyByIndex.get(i);
+            if (member != null && (i == index || groupSize.get(current[i]) == 1)) {
+                indexByParty.remove(member);
+                partyByIndex.set(i, null);
+                freed.put(member, i);
+            }
+        }
+        publish();
+        return true;
+    }
+
+    /**
+     * Parties allied with the given one (not including itself)
+     */
+    public synchronized List<UUID> getAllies(UUID partyId) {
+        int index = indexOf(partyId);
+        if (index == NO_ALLIANCE) return List.of();
+
+        int root = sets.find(index);
+        List<UUID> allies = new ArrayList<>();
+        for (int i = 0; i < partyByIndex.size(); i++) {
+            UUID ally = partyByIndex.get(i);
+            if (i != index && ally != null && sets.find(i) == root) {
+                allies.add(ally);
+            }
+        }
+        return allies;
+    }
+
+    /**
+     * Disbanded parties leave their alliance and their pending requests are dropped
+     */
+    @Override
+    public void onPartyDisbanded(Party party) {
+        Map<UUID, Integer> freed = new LinkedHashMap<>();
+        synchronized (this) {
+            requests.remove(party.getId());
+            for (Map<UUID, Long> requesting : requests.values()) {
+                requesting.remove(party.getId());
+            }
+            leave(party.getId(), freed);
+        }
+        notifyIndexChanged(freed);
+    }
+
+    /**
+     * Tells the listener about parties that lost their index; each index is free again once its party is refreshed.
+     * An index whose refresh never completes (e.g. the world shut down) stays unused, which only costs a slot.
+     */
+    private void notifyIndexChanged(Map<UUID, Integer> freed) {
+        for (Map.Entry<UUID, Integer> entry : freed.entrySet()) {
+            int index = entry.getValue();
+            indexListener.accept(entry.getKey(), () -> release(index));
+        }
+    }
+
+    private synchronized void release(int index) {
+        freeIndexes.add(index);
+    }
+
+    /**
+     * Publishes the new roots and hands the alliances to the persister
+     */
+    private void publish() {
+        roots = sets.roots();
+        if (persister != null) {
+            persister.recordAlliances(groups());
+        }
+    }
+
+    /**
+     * Alliances with at least two parties, as lists of party ids
+     */
+    private List<List<UUID>> groups() {
+        Map<Integer, List<UUID>> groups = new LinkedHashMap<>();
+        int[] current = roots;
+        for (int i = 0; i < current.length; i++) {
+            UUID partyId = partyByIndex.get(i);
+            if (partyId != null) {
+                groups.computeIfAbsent(current[i], key -> new ArrayList<>()).add(partyId);
+            }
+        }
+        groups.values().removeIf(group -> group.size() < 2);
+        return new ArrayList<>(groups.values());
+    }
+
+    /**
+     * Restores the alliances read by the storage
+     */
+    public synchronized void load(List<List<UUID>> alliances) {
+        List<UUID> ignored = new ArrayList<>();
+        for (List<UUID> alliance : alliances) {
+            if (alliance.size() < 2) continue;
+            int first = NO_ALLIANCE;
+            for (UUID partyId : alliance) {
+                int index = index(partyId, ignored);
+                if (first == NO_ALLIANCE) {
+                    first = index;
+                } else {
+                    sets.union(first, index);
+                }
+            }
+        }
+        roots = sets.roots();
+        logger.log(Level.INFO, "Loaded " + alliances.size() + " alliances");
+    }
+}
@@ -0,0 +1,74 @@
+package com.sl.party.alliance;
+
+import java.util.Arrays;
+
+/**
+ * Union-find over dense int ids, with union by rank and path compression
+ */
+final class DisjointSet {
+
+    private int[] parent = new int[16];
+    private byte[] rank = new byte[16];
+    private int size;
+
+    /**
+     * Adds a new singleton set and returns its id
+     */
+    int add() {
+        if (size == parent.length) {
+            parent = Arrays.copyOf(parent, size * 2);
+            rank = Arrays.copyOf(rank, size * 2);
+        }
+        parent[size] = size;
+        rank[size] = 0;
+        return size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int find(int x) {
+        int root = x;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        // Path compression: point everything on the way directly at the root
+        while (parent[x] != root) {
+            int next = parent[x];
+            parent[x] = root;
+            x = next;
+        }
+        return root;
+    }
+
+    /**
+     * Merges the sets of a and b. Returns false if they were already in the same set.
+     */
+    boolean union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) return false;
+
+        if (rank[rootA] < rank[rootB]) {
+            parent[rootA] = rootB;
+        } else if (rank[rootA] > rank[rootB]) {
+            parent[rootB] = rootA;
+        } else {
+            parent[rootB] = rootA;
+            rank[rootA]++;
+        }
+        return true;
+    }
+
+    /**
+     * Root of every id, fully resolved (a flat copy that can be read without further finds)
+     */
+    int[] roots() {
+        int[] roots = new int[size];
+        for (int i = 0; i < size; i++) {
+            roots[i] = find(i);
+        }
+        return roots;
+    }
+}
@@ -0,0 +1,17 @@
+package com.sl.party.broadcast;
+
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.component.system.tick.TickingSystem;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+
+/**
+ * Writes the party broadcasts queued on the ticking world's thread, once per tick.
+ * Queueing starts for a world's thread when the world is added (see {@link PartyBroadcast#startBatching()}).
+ */
+public class BroadcastFlushSystem extends TickingSystem<EntityStore> {
+
+    @Override
+    public void tick(float dt, int systemIndex, Store<EntityStore> store) {
+        PartyBroadcast.flush();
+    }
+}
@@ -0,0 +1,32 @@
+package com.sl.party.broadcast;
+
+import com.hypixel.hytale.protocol.Packet;
+import com.hypixel.hytale.protocol.packets.interface_.NotificationStyle;
+import com.hypixel.hytale.server.core.Message;
+
+/**
+ * Notification made only of constant messages (see {@link com.sl.party.messages.MessagesConfig}).
+ * Its packet is built on first use and then reused by every broadcast.
+ */
+public final class NotificationTemplate {
+
+    private final Message title;
+    private final Message subTitle;
+    private final NotificationStyle style;
+    private volatile Packet packet;
+
+    public NotificationTemplate(Message title, Message subTitle, NotificationStyle style) {
+        this.title = title;
+        this.subTitle = subTitle;
+        this.style = style;
+    }
+
+    public Packet getPacket() {
+        Packet built = packet;
+        if (built == null) {
+            built = PartyBroadcast.notification(title, subTitle, style);
+            packet = built;
+        }
+        return built;
+    }
+}
@@ -0,0 +1,147 @@
+package com.sl.party.broadcast;
+
+import com.hypixel.hytale.protocol.Packet;
+import com.hypixel.hytale.protocol.SoundCategory;
+import com.hypixel.hytale.protocol.packets.interface_.ChatType;
+import com.hypixel.hytale.protocol.packets.interface_.Notification;
+import com.hypixel.hytale.protocol.packets.interface_.NotificationStyle;
+import com.hypixel.hytale.protocol.packets.interface_.ServerMessage;
+import com.hypixel.hytale.protocol.packets.world.PlaySoundEvent2D;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.io.PacketHandler;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Sends one packet to many players. The packet is built once per broadcast (not once per member)
+ * and the same instance is written to every recipient's packet handler; packets are never modified
+ * after they are built, so sharing them is safe.
+ *
+ * On a world thread the packets are queued and written by {@link BroadcastFlushSystem} at the end of
+ * the tick, so several broadcasts in one tick (e.g. a message, a notification and a sound) reach each
+ * member as a single flush. Threads that don't tick a world send right away.
+ *
+ * Only party broadcasts are queued. Command replies ({@code sendMessage}), titles
+ * ({@code EventTitleUtil}) and sounds ({@code SoundUtil}) are written directly, so they can reach a
+ * player before a broadcast queued earlier in the same tick.
+ */
+public final class PartyBroadcast {
+
+    private static final ThreadLocal<Batch> BATCH = ThreadLocal.withInitial(Batch::new);
+
+    private PartyBroadcast() {
+        // Utility class
+    }
+
+    /**
+     * Chat packet of the message
+     */
+    public static Packet message(Message message) {
+        return new ServerMessage(ChatType.Chat, message.getFormattedMessage());
+    }
+
+    /**
+     * Party notification packet, with the party icon
+     */
+    public static Packet notification(Message title, Message subTitle, NotificationStyle style) {
+        return new Notification(
+            title.getFormattedMessage(),
+            subTitle != null ? subTitle.getFormattedMessage() : null,
+            "",
+            PartyIcons.party(),
+            style
+        );
+    }
+
+    public static Packet sound(int index, SoundCategory soundCategory) {
+        return new PlaySoundEvent2D(index, soundCategory, 1f, 1f);
+    }
+
+    /**
+     * Sends the packet to every recipient
+     */
+    public static void send(List<PlayerRef> recipients, Packet packet) {
+        send(recipients, packet, null);
+    }
+
+    /**
+     * Sends the packet to every recipient except {@code exceptId}
+     */
+    public static void send(List<PlayerRef> recipients, Packet packet, UUID exceptId) {
+        if (recipients.isEmpty()) return;
+
+        final Batch batch = BATCH.get();
+        for (int i = 0; i < recipients.size(); i++) {
+            final PlayerRef recipient = recipients.get(i);
+            if (exceptId != null && exceptId.equals(recipient.getUuid())) continue;
+
+            final PacketHandler handler = recipient.getPacketHandler();
+            if (handler == null) continue;
+            if (batch.flushing) {
+                batch.add(handler, packet);
+            } else {
+                handler.write(packet);
+            }
+        }
+    }
+
+
+    /**
+     * Starts queueing the broadcasts of the calling thread. Called on a world's thread when the world
+     * is added, so {@link BroadcastFlushSystem} writes them at the end of each of its ticks.
+     */
+    public static void startBatching() {
+        BATCH.get().flushing = true;
+    }
+
+    /**
+     * Writes the packets queued on the calling world thread, one write per member
+     */
+    static void flush() {
+        BATCH.get().flush();
+    }
+
+    /**
+     * Packets queued per packet handler on one world thread. Emptied lists are kept for reuse,
+     * but not the handlers, which belong to players who may leave.
+     */
+    private static final class Batch {
+
+        private static final int MAX_SPARE_LISTS = 64;
+
+        private final Map<PacketHandler, List<Packet>> pending = new IdentityHashMap<>();
+        private final List<List<Packet>> spare = new ArrayList<>();
+        private boolean flushing;
+
+        private void add(PacketHandler handler, Packet packet) {
+            List<Packet> packets = pending.get(handler);
+            if (packets == null) {
+                packets = spare.isEmpty() ? new ArrayList<>(4) : spare.remove(spare.size() - 1);
+                pending.put(handler, packets);
+            }
+            packets.add(packet);
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) return;
+            for (Map.Entry<PacketHandler, List<Packet>> entry : pending.entrySet()) {
+                final List<Packet> packets = entry.getValue();
+                if (packets.size() == 1) {
+                    entry.getKey().write(packets.get(0));
+                } else {
+                    entry.getKey().write(packets.toArray(new Packet[0]));
+                }
+                packets.clear();
+                if (spare.size() < MAX_SPARE_LISTS) {
+                    spare.add(packets);
+                }
+            }
+            pending.clear();
+        }
+    }
+}
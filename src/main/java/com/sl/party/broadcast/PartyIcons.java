@@ -0,0 +1,27 @@
+package com.sl.party.broadcast;
+
+import com.hypixel.hytale.protocol.ItemWithAllMetadata;
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.sl.party.messages.MessagesConfig;
+
+/**
+ * Icons of party notifications, converted to packets once on first use
+ * (item assets are not loaded yet when the plugin classes initialize)
+ */
+final class PartyIcons {
+
+    private static volatile ItemWithAllMetadata party;
+
+    private PartyIcons() {
+        // Utility class
+    }
+
+    static ItemWithAllMetadata party() {
+        ItemWithAllMetadata icon = party;
+        if (icon == null) {
+            icon = new ItemStack(MessagesConfig.PARTY_ICON_ITEM).toPacket();
+            party = icon;
+        }
+        return icon;
+    }
+}
@@ -0,0 +1,22 @@
+package com.sl.party.cache;
+
+import com.sl.party.model.Party;
+
+import java.util.UUID;
+
+/**
+ * Notified after a player joined or left a party (including create and disband).
+ * Called on the thread that made the change, possibly while the party is locked, so listeners
+ * must not block; look up the current party with {@link PartyCache#getParty(UUID)} when acting on it later.
+ */
+public interface MembershipListener {
+
+    default void onMembershipChanged(UUID playerId) {
+    }
+
+    /**
+     * Called once per disbanded party, after its members were notified
+     */
+    default void onPartyDisbanded(Party party) {
+    }
+}
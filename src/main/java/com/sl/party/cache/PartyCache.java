@@ -1,105 +1,419 @@
 package com.sl.party.cache;
 
+import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.sl.party.model.Party;
+import com.sl.party.model.PartyChangeListener;
+import com.sl.party.storage.EvictingPartyStorage;
+import com.sl.party.storage.JournalRecord;
+import com.sl.party.storage.PartyPersister;
 import com.sl.party.storage.PartyStorage;
 
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Cache for storing and managing parties
+ * Cache for storing and managing parties.
+ * Keeps member and owner indexes so player lookups don't scan every party.
+ * Lookups are lock-free; index writes for a party are serialized on that party,
+ * so world threads working on different parties never block each other.
+ *
+ * With a bound on offline parties set and an {@link EvictingPartyStorage} (kv backend), the cache
+ * is tiered: parties with an online member are always resident, fully offline parties wait in an
+ * LRU and the oldest ones beyond the bound are handed to the storage (see {@link EvictingPartyStorage#upsert}).
+ * They are loaded again when a member connects or is looked up, so memory follows the online players
+ * rather than everyone who ever played.
+ * Tier moves are serialized on one lock (lock order: tier lock, then party).
+ *
+ * Connected players are tracked from connect/disconnect events, and every resident party keeps the
+ * {@link PlayerRef}s of its online members (see {@link Party#getPlayers()}), so sending to a party
+ * or resolving a member never needs a universe lookup.
  */
 public class PartyCache {
 
-    private final Map<UUID, Party> cache = new HashMap<>();
+    private final Map<UUID, Party> cache = new ConcurrentHashMap<>();
+    private final Map<UUID, Party> memberIndex = new ConcurrentHashMap<>();  // Player UUID -> party
+    private final Map<UUID, Party> ownerIndex = new ConcurrentHashMap<>();   // Leader UUID -> party
+    private final PartyChangeListener changeListener = new ChangeListener();
+    private final List<MembershipListener> membershipListeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger nextHandle = new AtomicInteger(1);
     private PartyStorage storage;
+    private EvictingPartyStorage evictingStorage;  // The same storage if it can hold evicted parties
+    private PartyPersister persister;
+
+    private final Map<UUID, PlayerRef> onlinePlayers = new ConcurrentHashMap<>();  // Kept from connect/disconnect
+    private final Object tierLock = new Object();
+    private final Map<UUID, Party> offlineParties = new LinkedHashMap<>();  // Resident, fully offline, oldest first
+    private final Queue<Party> offlineCandidates = new ConcurrentLinkedQueue<>();  // Lost a member, check later
+    private int maxOfflineParties = -1;
+    private volatile boolean closed;
 
     public void setStorage(PartyStorage storage) {
         this.storage = storage;
+        this.evictingStorage = storage instanceof EvictingPartyStorage evicting ? evicting : null;
+    }
+
+    /**
+     * Sets the write-behind persister; without one, changes are saved synchronously
+     */
+    public void setPersister(PartyPersister persister) {
+        this.persister = persister;
+    }
+
+    /**
+     * Sets how many fully offline parties stay in memory; -1 keeps every party resident.
+     * Ignored unless the storage is an {@link EvictingPartyStorage}.
+     */
+    public void setMaxOfflineParties(int maxOfflineParties) {
+        this.maxOfflineParties = maxOfflineParties;
+    }
+
+    private boolean isTiered() {
+        return maxOfflineParties >= 0 && evictingStorage != null;
+    }
+
+    public void addMembershipListener(MembershipListener listener) {
+        membershipListeners.add(listener);
+    }
+
+    private void fireMembershipChanged(UUID playerId) {
+        for (MembershipListener listener : membershipListeners) {
+            listener.onMembershipChanged(playerId);
+        }
     }
 
     public void add(Party party) {
-        cache.put(party.getId(), party);
-        saveAsync();
+        if (closed) return;
+        synchronized (party) {
+            // Queue the create before the party is findable, so none of its changes is journaled ahead of it
+            if (persister != null) {
+                persister.record(JournalRecord.create(party));
+            }
+            index(party);
+        }
+        if (persister == null && storage != null) {
+            storage.save(cache.values());
+        }
+        for (UUID memberId : party.getMembers()) {
+            fireMembershipChanged(memberId);
+        }
     }
 
     public void remove(Party party) {
-        cache.remove(party.getId());
-        saveAsync();
+        if (closed) return;
+        if (isTiered()) {
+            synchronized (tierLock) {
+                offlineParties.remove(party.getId(), party);
+            }
+        }
+        unindex(party);
+        record(JournalRecord.disband(party));
+        for (UUID memberId : party.getMembers()) {
+            fireMembershipChanged(memberId);
+        }
+        for (MembershipListener listener : membershipListeners) {
+            listener.onPartyDisbanded(party);
+        }
+    }
+
+    private void index(Party party) {
+        synchronized (party) {
+            party.setHandle(nextHandle());
+            cache.put(party.getId(), party);
+            ownerIndex.put(party.getOwnerId(), party);
+            for (UUID memberId : party.getMembers()) {
+                memberIndex.put(memberId, party);
+                party.setOnline(onlinePlayers.get(memberId));
+            }
+            if (!closed) {
+                party.setChangeListener(changeListener);
+            }
+        }
     }
 
     /**
-     * Load parties from storage
+     * Handles are never reused while the server runs, so a stale handle on an entity can't match another party
      */
-    public void load() {
-        if (storage != null) {
-            List<Party> parties = storage.load();
-            for (Party party : parties) {
-                cache.put(party.getId(), party);
+    private int nextHandle() {
+        int handle = nextHandle.getAndIncrement();
+        if (handle <= 0) {
+            // Wrapped around after 2^31 parties were loaded, start over
+            nextHandle.set(2);
+            handle = 1;
+        }
+        return handle;
+    }
+
+    private void unindex(Party party) {
+        synchronized (party) {
+            if (cache.remove(party.getId()) == null) return;
+            party.setChangeListener(null);
+            party.setHandle(0);
+            ownerIndex.remove(party.getOwnerId(), party);
+            for (UUID memberId : party.getMembers()) {
+                memberIndex.remove(memberId, party);
             }
         }
     }
 
     /**
-     * Save parties to storage asynchronously
+     * Load parties from storage. In tiered mode nobody is online yet, so every party stays
+     * in the storage and is loaded when one of its members connects.
+     */
+    public void load() {
+        if (storage == null) return;
+        if (isTiered()) {
+            evictingStorage.open();
+            return;
+        }
+        for (Party party : storage.loadAll()) {
+            index(party);
+        }
+    }
+
+    /**
+     * Hand a change to the persister, or save synchronously without one.
+     * Every change of a resident party arrives here through its change listener.
      */
-    private void saveAsync() {
-        if (storage != null) {
+    private void record(JournalRecord record) {
+        if (persister != null) {
+            persister.record(record);
+        } else if (storage != null) {
             storage.save(cache.values());
         }
     }
 
     public Party getParty(UUID playerId) {
         if (playerId == null) return null;
-        return cache.values().stream()
-            .filter(party -> party.isMember(playerId))
-            .findFirst()
-            .orElse(null);
+        Party party = memberIndex.get(playerId);
+        // Online players' parties are always resident, only offline players can miss here
+        if (party != null || !isTiered() || onlinePlayers.containsKey(playerId)) {
+            return party;
+        }
+        return restore(playerId);
     }
 
     public Party getByOwner(UUID ownerId) {
         if (ownerId == null) return null;
-        return cache.values().stream()
-            .filter(party -> party.isLeader(ownerId))
-            .findFirst()
-            .orElse(null);
+        Party party = ownerIndex.get(ownerId);
+        if (party != null || !isTiered() || onlinePlayers.containsKey(ownerId)) {
+            return party;
+        }
+        party = restore(ownerId);
+        return party != null && party.isLeader(ownerId) ? party : null;
     }
 
     public boolean hasParty(UUID playerId) {
-        if (playerId == null) return false;
-        return cache.values().stream()
-            .anyMatch(party -> party.isMember(playerId));
+        return getParty(playerId) != null;
     }
 
+    /**
+     * Resident parties (evicted ones are written by the storage itself)
+     */
     public Collection<Party> getParties() {
         return cache.values();
     }
 
     /**
-     * Removes a player from their party when they disconnect
-     * Note: Does NOT disband party when leader leaves - party persists for reconnection
+     * Resident party by party id, without loading from storage
+     */
+    public Party getResidentParty(UUID partyId) {
+        return cache.get(partyId);
+    }
+
+    /**
+     * Online player by UUID, or null if they are offline
+     */
+    public PlayerRef getOnlinePlayer(UUID playerId) {
+        return onlinePlayers.get(playerId);
+    }
+
+    /**
+     * Marks a player as online, makes sure their party is resident and adds them to its online players
      */
-    public void leaveParty(UUID playerId) {
+    public Party markOnline(PlayerRef playerRef) {
+        if (playerRef == null) return null;
+        final UUID playerId = playerRef.getUuid();
+        onlinePlayers.put(playerId, playerRef);
+        if (!isTiered()) {
+            Party party = memberIndex.get(playerId);
+            if (party != null) {
+                party.setOnline(playerRef);
+            }
+            return party;
+        }
+
+        synchronized (tierLock) {
+            Party party = restore(playerId);
+            if (party != null) {
+                offlineParties.remove(party.getId());
+                party.setOnline(playerRef);
+            }
+            return party;
+        }
+    }
+
+    /**
+     * Called when a player disconnects.
+     * Note: Does NOT remove the player from the party - party persists for reconnection.
+     * Once no member is online the party may be evicted from memory.
+     */
+    public void markOffline(UUID playerId) {
         if (playerId == null) return;
+        onlinePlayers.remove(playerId);
+        Party current = memberIndex.get(playerId);
+        if (current != null) {
+            current.setOffline(playerId);
+        }
+        if (!isTiered()) return;
+
+        synchronized (tierLock) {
+            Party party = memberIndex.get(playerId);
+            if (party != null) {
+                offlineCandidates.add(party);
+            }
+            Party candidate;
+            while ((candidate = offlineCandidates.poll()) != null) {
+                if (cache.get(candidate.getId()) == candidate && !hasOnlineMember(candidate)) {
+                    // Re-insert so the LRU order is by the time the party went offline
+                    offlineParties.remove(candidate.getId());
+                    offlineParties.put(candidate.getId(), candidate);
+                }
+            }
+            evictOverflow();
+        }
+    }
+
+    private boolean hasOnlineMember(Party party) {
+        for (UUID memberId : party.getMembers()) {
+            if (onlinePlayers.containsKey(memberId)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Loads an evicted party back into the cache. Returns the resident party if there already is one.
+     */
+    private Party restore(UUID playerId) {
+        synchronized (tierLock) {
+            Party party = memberIndex.get(playerId);
+            if (party != null) return party;
+
+            party = evictingStorage.findByMember(playerId);
+            if (party == null) return null;
+
+            // A resident party is the live state; the stored copy may not have its latest changes yet
+            // (e.g. the player was kicked and the change isn't flushed). Never replace it.
+            Party live = cache.get(party.getId());
+            if (live != null) {
+                return live.isMember(playerId) ? live : null;
+            }
+
+            // Index before the storage drops its copy, so a snapshot taken in between sees one of them
+            index(party);
+            evictingStorage.markResident(party.getId());
+            if (!hasOnlineMember(party)) {
+                offlineParties.put(party.getId(), party);
+            }
+            return party;
+        }
+    }
 
-        // Don't remove from party on disconnect - party persists
-        // Player will rejoin their party when they reconnect
+    private void evictOverflow() {
+        Iterator<Party> eldest = offlineParties.values().iterator();
+        while (offlineParties.size() > maxOfflineParties && eldest.hasNext()) {
+            Party party = eldest.next();
+            eldest.remove();
+            evict(party);
+        }
+    }
+
+    private void evict(Party party) {
+        synchronized (party) {
+            if (cache.get(party.getId()) != party || hasOnlineMember(party)) return;
+            // Storage first, so a snapshot taken in between sees one of the copies
+            evictingStorage.upsert(party);
+            unindex(party);
+        }
     }
 
     /**
-     * Call this after modifying party membership to persist changes
+     * Stops accepting party changes (first step of shutdown). Parties stay readable,
+     * but nothing changed from now on is recorded, so the final snapshot is consistent.
      */
-    public void save() {
-        saveAsync();
+    public void close() {
+        closed = true;
+        for (Party party : cache.values()) {
+            synchronized (party) {
+                // Waits for a change that is in progress on this party
+                party.setChangeListener(null);
+            }
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
     }
 
     /**
      * Clears all parties (used on shutdown)
      */
     public void clear() {
+        for (Party party : cache.values()) {
+            party.setChangeListener(null);
+        }
         cache.clear();
+        memberIndex.clear();
+        ownerIndex.clear();
+        synchronized (tierLock) {
+            offlineParties.clear();
+            offlineCandidates.clear();
+        }
+        membershipListeners.clear();
+        onlinePlayers.clear();
+    }
+
+    /**
+     * Keeps the member index in sync with Party.addMember / Party.removeMember
+     * and journals every change of a cached party
+     */
+    private class ChangeListener implements PartyChangeListener {
+
+        @Override
+        public void onMemberAdded(Party party, UUID playerId) {
+            memberIndex.put(playerId, party);
+            party.setOnline(onlinePlayers.get(playerId));
+            record(JournalRecord.memberAdded(party, playerId));
+            fireMembershipChanged(playerId);
+        }
+
+        @Override
+        public void onMemberRemoved(Party party, UUID playerId) {
+            memberIndex.remove(playerId, party);
+            if (isTiered()) {
+                // Maybe the last online member left; checked on the next disconnect
+                offlineCandidates.add(party);
+            }
+            record(JournalRecord.memberRemoved(party, playerId));
+            fireMembershipChanged(playerId);
+        }
+
+        @Override
+        public void onMemberRenamed(Party party, UUID playerId, String username) {
+            record(JournalRecord.rename(party, playerId, username));
+        }
+
+        @Override
+        public void onPublishChanged(Party party, boolean publish) {
+            record(JournalRecord.publish(party, publish));
+        }
     }
 }
@@ -0,0 +1,66 @@
+package com.sl.party.chat;
+
+import com.hypixel.hytale.server.core.Message;
+
+import java.awt.Color;
+
+/**
+ * Recent chat lines of one party in a fixed ring of preallocated slots: once full, each new line
+ * overwrites the oldest, so memory stays the same however much the party chats.
+ * Times are seconds since {@link PartyChatChannel} started, as ints.
+ *
+ * Only used from the chat thread.
+ */
+final class ChatHistory {
+
+    private final String[] senders;
+    private final String[] texts;
+    private final int[] times;
+    private int next;  // Slot the next line goes to
+    private int size;
+
+    ChatHistory(int capacity) {
+        this.senders = new String[capacity];
+        this.texts = new String[capacity];
+        this.times = new int[capacity];
+    }
+
+    void add(String sender, String text, int time) {
+        senders[next] = sender;
+        texts[next] = text;
+        times[next] = time;
+        next = (next + 1) % senders.length;
+        if (size < senders.length) size++;
+    }
+
+    /**
+     * The last {@code max} lines not older than {@code since}, oldest first, as one message;
+     * null if there are none
+     */
+    Message replay(int max, int since) {
+        int count = 0;
+        while (count < Math.min(max, size) && times[slot(count)] >= since) {
+            count++;
+        }
+        if (count == 0) return null;
+
+        final Message[] parts = new Message[1 + count * 2];
+        parts[0] = Message.raw("Recent party chat:").color(Color.GRAY);
+        for (int n = 0; n < count; n++) {
+            parts[1 + n * 2] = Message.raw("\n");
+            parts[2 + n * 2] = line(slot(count - 1 - n));
+        }
+        return Message.join(parts);
+    }
+
+    /**
+     * Slot of the line {@code back} lines before the newest
+     */
+    private int slot(int back) {
+        return Math.floorMod(next - 1 - back, senders.length);
+    }
+
+    private Message line(int i) {
+        return Message.raw("[Party]").color(Color.MAGENTA).insert(" " + senders[i] + ": " + texts[i]).color(Color.GRAY);
+    }
+}
@@ -0,0 +1,92 @@
+package com.sl.party.chat;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only log of party chat in chat.log, one tab-separated line per message
+ * (epoch seconds, party id, sender, text). When it reaches the size limit it is moved to
+ * chat.log.1 (replacing the previous one) and a new file is started, so at most two files are kept.
+ *
+ * Only used from the chat thread.
+ */
+final class ChatLogWriter {
+
+    private final Path file;
+    private final Path rolled;
+    private final long maxBytes;
+    private final Logger logger;
+    private BufferedWriter writer;
+    private long bytes;
+
+    ChatLogWriter(Path dataFolder, long maxBytes, Logger logger) {
+        this.file = dataFolder.resolve("chat.log");
+        this.rolled = dataFolder.resolve("chat.log.1");
+        this.maxBytes = maxBytes;
+        this.logger = logger;
+    }
+
+    void append(long epochSeconds, UUID partyId, String sender, String text) {
+        try {
+            if (writer == null) open();
+            if (bytes >= maxBytes) roll();
+
+            final String line = epochSeconds + "\t" + partyId + "\t" + clean(sender) + "\t" + clean(text) + "\n";
+            writer.write(line);
+            bytes += line.getBytes(StandardCharsets.UTF_8).length;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to write chat log: " + e.getMessage());
+            close();
+        }
+    }
+
+    /**
+     * Writes buffered lines out, called after each delivery
+     */
+    void flush() {
+        if (writer == null) return;
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to write chat log: " + e.getMessage());
+            close();
+        }
+    }
+
+    void close() {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to close chat log: " + e.getMessage());
+        }
+        writer = null;
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(file.getParent());
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        bytes = Files.size(file);
+    }
+
+    private void roll() throws IOException {
+        writer.close();
+        writer = null;
+        Files.move(file, rolled, StandardCopyOption.REPLACE_EXISTING);
+        open();
+    }
+
+    // Tabs and line breaks would split the record
+    private static String clean(String value) {
+        return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
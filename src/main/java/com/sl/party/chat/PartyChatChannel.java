@@ -0,0 +1,225 @@
+package com.sl.party.chat;
+
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.sl.party.broadcast.PartyBroadcast;
+import com.sl.party.cache.PartyCache;
+import com.sl.party.config.PartyConfig;
+import com.sl.party.model.Party;
+
+import java.awt.Color;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Party chat, delivered on its own thread so chat never waits for (or slows down) a world tick.
+ * The party and its online members are read from the cache's thread-safe snapshots.
+ *
+ * Each player has a token bucket, so a burst of messages is fine but spam is refused. Messages to
+ * the same party within {@code coalesceWindowMs} go out together, as one chat packet per member.
+ *
+ * The last {@code historySize} lines of each resident party are kept in a {@link ChatHistory} and
+ * replayed to members who join or reconnect, as one message. With {@code logToFile} every line is
+ * also appended to a rolling chat.log ({@link ChatLogWriter}).
+ */
+public class PartyChatChannel {
+
+    public enum Result {
+        SENT,
+        NOT_IN_A_PARTY,
+        RATE_LIMITED
+    }
+
+    private static final Message NEW_LINE = Message.raw("\n");
+    private static final long SWEEP_INTERVAL_SECONDS = 60;
+
+    private final PartyCache partyCache;
+    private final PartyConfig.Chat settings;
+    private final Logger logger;
+    private final ScheduledExecutorService executor;
+    private final Map<UUID, TokenBucket> buckets = new ConcurrentHashMap<>();  // Player UUID -> rate limit
+    private final Map<UUID, Pending> pending = new ConcurrentHashMap<>();      // Party id -> lines not sent yet
+    private final Map<UUID, ChatHistory> histories = new HashMap<>();          // Party id -> recent lines, chat thread only
+    private final ChatLogWriter log;  // Null unless logToFile
+    private final long startedAt = System.currentTimeMillis() / 1000;  // Base of the history times
+
+    public PartyChatChannel(PartyCache partyCache, PartyConfig.Chat settings, Path dataFolder, Logger logger) {
+        this.partyCache = partyCache;
+        this.settings = settings;
+        this.logger = logger;
+        this.log = settings.isLogToFile() ? new ChatLogWriter(dataFolder, settings.getLogMaxBytes(), logger) : null;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SLParty-Chat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::sweepHistories, SWEEP_INTERVAL_SECONDS, SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Queues a chat message of the player to their party. Safe to call from any thread.
+     */
+    public Result send(PlayerRef sender, String text) {
+        final UUID senderId = sender.getUuid();
+        final Party party = partyCache.getParty(senderId);
+        if (party == null) return Result.NOT_IN_A_PARTY;
+
+        final long now = System.nanoTime();
+        final TokenBucket bucket = buckets.computeIfAbsent(senderId,
+            key -> new TokenBucket(settings.getBurst(), settings.getRefillPerSecond(), now));
+        if (!bucket.tryTake(now)) return Result.RATE_LIMITED;
+
+        final Line line = new Line(sender.getUsername(), text, System.currentTimeMillis() / 1000);
+
+        // Only the first line of a window schedules the delivery; the others join it
+        final boolean[] first = new boolean[1];
+        pending.compute(party.getId(), (id, lines) -> {
+            if (lines == null) {
+                lines = new Pending(party);
+                first[0] = true;
+            }
+            lines.lines.add(line);
+            return lines;
+        });
+        if (first[0]) {
+            try {
+                executor.schedule(() -> deliver(party.getId()), settings.getCoalesceWindowMs(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                pending.remove(party.getId());  // Shutting down
+            }
+        }
+        return Result.SENT;
+    }
+
+    /**
+     * Sends the party's recent chat to a member who just joined or reconnected, in one message
+     */
+    public void replay(PlayerRef member, Party party) {
+        if (settings.getReplayLines() == 0) return;
+        try {
+            executor.execute(() -> {
+                final ChatHistory history = histories.get(party.getId());
+                if (history == null) return;
+
+                final int since = (int) (System.currentTimeMillis() / 1000 - startedAt - settings.getReplayMaxAgeSeconds());
+                final Message message = history.replay(settings.getReplayLines(), since);
+                if (message != null) {
+                    PartyBroadcast.send(List.of(member), PartyBroadcast.message(message));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    /**
+     * Drops the rate limit of a disconnected player
+     */
+    public void forget(UUID playerId) {
+        buckets.remove(playerId);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    private void deliver(UUID partyId) {
+        final Pending lines = pending.remove(partyId);
+        if (lines == null) return;
+
+        try {
+            PartyBroadcast.send(lines.party.getPlayers(), PartyBroadcast.message(lines.join()));
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Failed to deliver party chat: " + e.getMessage());
+        }
+
+        if (settings.getHistorySize() == 0 && log == null) return;
+        final ChatHistory history = settings.getHistorySize() > 0
+            ? histories.computeIfAbsent(partyId, id -> new ChatHistory(settings.getHistorySize()))
+            : null;
+        for (Line line : lines.lines) {
+            if (history != null) {
+                history.add(line.sender, line.text, (int) (line.epochSeconds - startedAt));
+            }
+            if (log != null) {
+                log.append(line.epochSeconds, partyId, line.sender, line.text);
+            }
+        }
+        if (log != null) {
+            log.flush();
+        }
+    }
+
+    /**
+     * Drops the history of parties no longer in memory (disbanded, or evicted with nobody online)
+     */
+    private void sweepHistories() {
+        histories.keySet().removeIf(partyId -> partyCache.getResidentParty(partyId) == null);
+    }
+
+    /**
+     * One chat message, as typed
+     */
+    private static final class Line {
+
+        private final String sender;
+        private final String text;
+        private final long epochSeconds;
+
+        private Line(String sender, String text, long epochSeconds) {
+            this.sender = sender;
+            this.text = text;
+            this.epochSeconds = epochSeconds;
+        }
+
+        private Message toMessage() {
+            return Message.raw("[Party]").color(Color.MAGENTA).insert(" " + sender + ": " + text).color(Color.WHITE);
+        }
+    }
+
+    /**
+     * Lines to one party waiting for the end of the coalescing window
+     */
+    private static final class Pending {
+
+        private final Party party;
+        private final List<Line> lines = new ArrayList<>(2);
+
+        private Pending(Party party) {
+            this.party = party;
+        }
+
+        private Message join() {
+            if (lines.size() == 1) return lines.get(0).toMessage();
+
+            final Message[] parts = new Message[lines.size() * 2 - 1];
+            for (int i = 0; i < lines.size(); i++) {
+                if (i > 0) parts[i * 2 - 1] = NEW_LINE;
+                parts[i * 2] = lines.get(i).toMessage();
+            }
+            return Message.join(parts);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.sl.party.chat;
+
+/**
+ * Rate limit of one player: up to {@code capacity} messages in a row, then {@code refillPerSecond}
+ */
+final class TokenBucket {
+
+    private final double capacity;
+    private final double refillPerNano;
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(int capacity, double refillPerSecond, long now) {
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.refilledAt = now;
+    }
+
+    /**
+     * Takes one token if there is one
+     */
+    synchronized boolean tryTake(long now) {
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * refillPerNano);
+        refilledAt = now;
+        if (tokens < 1) return false;
+        tokens--;
+        return true;
+    }
+}
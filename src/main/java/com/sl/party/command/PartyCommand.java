@@ -4,7 +4,9 @@ import com.hypixel.hytale.protocol.GameMode;
 import com.hypixel.hytale.server.core.Message;
 import com.hypixel.hytale.server.core.command.system.CommandContext;
 import com.hypixel.hytale.server.core.command.system.basecommands.CommandBase;
+import com.sl.party.alliance.AllianceManager;
 import com.sl.party.cache.PartyCache;
+import com.sl.party.chat.PartyChatChannel;
 import com.sl.party.command.impl.*;
 import org.checkerframework.checker.nullness.compatqual.NonNullDecl;
 
@@ -12,19 +14,22 @@ public class PartyCommand extends CommandBase {
 
     private final PartyCache partyCache;
 
-    public PartyCommand(PartyCache partyCache) {
+    public PartyCommand(PartyCache partyCache, AllianceManager alliances, PartyChatChannel chatChannel) {
         super("party", "Party commands - create groups with friends");
         this.partyCache = partyCache;
 
         addSubCommand(new PartyCreateSubCommand(partyCache));
         addSubCommand(new PartyInfoSubCommand(partyCache));
-        addSubCommand(new PartyJoinSubCommand(partyCache));
+        addSubCommand(new PartyJoinSubCommand(partyCache, chatChannel));
         addSubCommand(new PartyPublicSubCommand(partyCache));
         addSubCommand(new PartyInviteSubCommand(partyCache));
         addSubCommand(new PartyKickSubCommand(partyCache));
         addSubCommand(new PartyDisbandSubCommand(partyCache));
         addSubCommand(new PartyLeaveSubCommand(partyCache));
-        addSubCommand(new PartyChatSubCommand(partyCache));
+        addSubCommand(new PartyChatSubCommand(chatChannel));
+        addSubCommand(new PartyAllySubCommand(partyCache, alliances));
+        addSubCommand(new PartyUnallySubCommand(partyCache, alliances));
+        addSubCommand(new PartyPinSubCommand(partyCache));
         addSubCommand(new PartyTestHudSubCommand());
         addSubCommand(new PartyTestMarkerSubCommand());
     }
@@ -47,5 +52,8 @@ public class PartyCommand extends CommandBase {
         commandContext.sendMessage(Message.raw("/party disband - Disband your party").color(java.awt.Color.WHITE));
         commandContext.sendMessage(Message.raw("/party public - Toggle public/private").color(java.awt.Color.WHITE));
         commandContext.sendMessage(Message.raw("/party chat <msg> - Party chat").color(java.awt.Color.WHITE));
+        commandContext.sendMessage(Message.raw("/party ally <leader> - Request or accept an alliance").color(java.awt.Color.WHITE));
+        commandContext.sendMessage(Message.raw("/party unally - Leave your alliance").color(java.awt.Color.WHITE));
+        commandContext.sendMessage(Message.raw("/party pin <player> - Keep a member on your compass").color(java.awt.Color.WHITE));
     }
 }
@@ -0,0 +1,113 @@
+package com.sl.party.command.impl;
+
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.arguments.system.RequiredArg;
+import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
+import com.hypixel.hytale.server.core.command.system.basecommands.AbstractAsyncCommand;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import com.sl.party.alliance.AllianceManager;
+import com.sl.party.cache.PartyCache;
+import com.sl.party.messages.MessagesConfig;
+import com.sl.party.model.Party;
+import org.checkerframework.checker.nullness.compatqual.NonNullDecl;
+
+import java.awt.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Requests or accepts an alliance with another party. Both leaders have to run it.
+ */
+public class PartyAllySubCommand extends AbstractAsyncCommand {
+
+    private final PartyCache partyCache;
+    private final AllianceManager alliances;
+    private RequiredArg<PlayerRef> targetRefArg;
+
+    public PartyAllySubCommand(PartyCache partyCache, AllianceManager alliances) {
+        super("ally", "Ally your party with another party");
+        this.partyCache = partyCache;
+        this.alliances = alliances;
+
+        this.targetRefArg = this.withRequiredArg("leader", "leader of the other party", ArgTypes.PLAYER_REF);
+    }
+
+    @Override
+    protected boolean canGeneratePermission() {
+        return false;
+    }
+
+    @NonNullDecl
+    @Override
+    protected CompletableFuture<Void> executeAsync(@NonNullDecl CommandContext commandContext) {
+        if (!commandContext.isPlayer()) {
+            commandContext.sendMessage(MessagesConfig.ONLY_PLAYER);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final Player player = (Player) commandContext.sender();
+        final Ref<EntityStore> reference = player.getReference();
+        if (reference == null) return CompletableFuture.completedFuture(null);
+
+        final Store<EntityStore> store = reference.getStore();
+        final World world = store.getExternalData().getWorld();
+
+        world.execute(() -> {
+            final PlayerRef playerRef = store.getComponent(reference, PlayerRef.getComponentType());
+            if (playerRef == null) return;
+
+            if (partyCache.isClosed()) {
+                commandContext.sendMessage(MessagesConfig.PARTIES_UNAVAILABLE);
+                return;
+            }
+
+            final Party party = partyCache.getParty(playerRef.getUuid());
+            if (party == null) {
+                playerRef.sendMessage(MessagesConfig.NOT_IN_A_PARTY);
+                return;
+            }
+
+            if (!party.isLeader(playerRef.getUuid())) {
+                playerRef.sendMessage(MessagesConfig.ONLY_OWNER_CAN_ALLY);
+                return;
+            }
+
+            final PlayerRef targetRef = commandContext.get(targetRefArg);
+            if (targetRef == null) {
+                playerRef.sendMessage(MessagesConfig.PLAYER_NOT_FOUND);
+                return;
+            }
+
+            final Party targetParty = partyCache.getByOwner(targetRef.getUuid());
+            if (targetParty == null) {
+                playerRef.sendMessage(MessagesConfig.PLAYER_DONT_HAVE_PARTY);
+                return;
+            }
+
+            if (targetParty == party) {
+                playerRef.sendMessage(MessagesConfig.CANT_ALLY_OWN_PARTY);
+                return;
+            }
+
+            switch (alliances.requestAlliance(party.getId(), targetParty.getId())) {
+                case REQUESTED -> {
+                    playerRef.sendMessage(MessagesConfig.ALLIANCE_REQUEST_SENT);
+                    targetRef.sendMessage(Message.raw(playerRef.getUsername() + "'s party wants to ally with you! Use /party ally "
+                        + playerRef.getUsername() + " to accept").color(Color.CYAN));
+                }
+                case FORMED -> {
+                    party.sendMessage(Message.raw("Your party is now allied with " + targetRef.getUsername() + "'s party!").color(Color.GREEN));
+                    targetParty.sendMessage(Message.raw("Your party is now allied with " + playerRef.getUsername() + "'s party!").color(Color.GREEN));
+                }
+                case ALREADY_ALLIED -> playerRef.sendMessage(MessagesConfig.ALREADY_ALLIED);
+            }
+        });
+
+        return CompletableFuture.completedFuture(null);
+    }
+}
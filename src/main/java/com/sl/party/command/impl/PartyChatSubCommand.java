@@ -1,29 +1,22 @@
 package com.sl.party.command.impl;
 
-import com.hypixel.hytale.component.Ref;
-import com.hypixel.hytale.component.Store;
-import com.hypixel.hytale.server.core.Message;
 import com.hypixel.hytale.server.core.command.system.CommandContext;
 import com.hypixel.hytale.server.core.command.system.basecommands.AbstractAsyncCommand;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
-import com.hypixel.hytale.server.core.universe.world.World;
-import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
-import com.sl.party.cache.PartyCache;
+import com.sl.party.chat.PartyChatChannel;
 import com.sl.party.messages.MessagesConfig;
-import com.sl.party.model.Party;
 import org.checkerframework.checker.nullness.compatqual.NonNullDecl;
 
-import java.awt.*;
 import java.util.concurrent.CompletableFuture;
 
 public class PartyChatSubCommand extends AbstractAsyncCommand {
 
-    private final PartyCache partyCache;
+    private final PartyChatChannel chatChannel;
 
-    public PartyChatSubCommand(PartyCache partyCache) {
+    public PartyChatSubCommand(PartyChatChannel chatChannel) {
         super("chat", "Chat with party members");
-        this.partyCache = partyCache;
+        this.chatChannel = chatChannel;
 
         setAllowsExtraArguments(true);
     }
@@ -41,36 +34,38 @@ public class PartyChatSubCommand extends AbstractAsyncCommand {
             return CompletableFuture.completedFuture(null);
         }
 
+        // No world thread needed: the channel only reads thread-safe party snapshots
         final Player player = (Player) commandContext.sender();
-        final Ref<EntityStore> reference = player.getReference();
-        if (reference == null) return CompletableFuture.completedFuture(null);
+        final PlayerRef playerRef = player.getPlayerRef();
+        if (playerRef == null) return CompletableFuture.completedFuture(null);
 
-        final Store<EntityStore> store = reference.getStore();
-        final World world = store.getExternalData().getWorld();
+        final String message = messageOf(commandContext.getInputString());
+        if (message.isEmpty()) return CompletableFuture.completedFuture(null);
 
-        world.execute(() -> {
-            final PlayerRef playerRef = store.getComponent(reference, PlayerRef.getComponentType());
-            if (playerRef == null) return;
-
-            final Party party = partyCache.getParty(playerRef.getUuid());
-            if (party == null) {
+        switch (chatChannel.send(playerRef, message)) {
+            case NOT_IN_A_PARTY:
                 playerRef.sendMessage(MessagesConfig.NOT_IN_A_PARTY);
-                return;
-            }
-
-            final String[] parts = commandContext.getInputString().split(" ");
-            final StringBuilder messageBuilder = new StringBuilder();
-            for (int i = 2; i < parts.length; i++) {
-                messageBuilder.append(parts[i]);
-                if (i < parts.length - 1) {
-                    messageBuilder.append(" ");
-                }
-            }
-
-            final String message = messageBuilder.toString();
-            party.sendMessage(Message.raw("[Party]").color(Color.MAGENTA).insert(" " + playerRef.getUsername() + ": " + message).color(Color.WHITE));
-        });
+                break;
+            case RATE_LIMITED:
+                playerRef.sendMessage(MessagesConfig.CHAT_RATE_LIMITED);
+                break;
+            default:
+                break;
+        }
 
         return CompletableFuture.completedFuture(null);
     }
+
+    /**
+     * Everything after "party chat", as typed
+     */
+    private static String messageOf(String input) {
+        int start = 0;
+        for (int word = 0; word < 2; word++) {
+            final int space = input.indexOf(' ', start);
+            if (space < 0) return "";
+            start = space + 1;
+        }
+        return input.substring(start).trim();
+    }
 }
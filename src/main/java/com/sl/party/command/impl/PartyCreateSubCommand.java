@@ -47,6 +47,11 @@ public class PartyCreateSubCommand extends AbstractAsyncCommand {
             final PlayerRef playerRef = store.getComponent(reference, PlayerRef.getComponentType());
             if (playerRef == null) return;
 
+            if (partyCache.isClosed()) {
+                commandContext.sendMessage(MessagesConfig.PARTIES_UNAVAILABLE);
+                return;
+            }
+
             if (partyCache.hasParty(playerRef.getUuid())) {
                 commandContext.sendMessage(MessagesConfig.ALREADY_IN_A_PARTY);
                 return;
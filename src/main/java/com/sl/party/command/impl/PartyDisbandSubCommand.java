@@ -2,8 +2,6 @@ package com.sl.party.command.impl;
 
 import com.hypixel.hytale.component.Ref;
 import com.hypixel.hytale.component.Store;
-import com.hypixel.hytale.protocol.packets.interface_.NotificationStyle;
-import com.hypixel.hytale.server.core.Message;
 import com.hypixel.hytale.server.core.command.system.CommandContext;
 import com.hypixel.hytale.server.core.command.system.basecommands.AbstractAsyncCommand;
 import com.hypixel.hytale.server.core.entity.entities.Player;
@@ -50,6 +48,11 @@ public class PartyDisbandSubCommand extends AbstractAsyncCommand {
             final PlayerRef playerRef = store.getComponent(reference, PlayerRef.getComponentType());
             if (playerRef == null) return;
 
+            if (partyCache.isClosed()) {
+                commandContext.sendMessage(MessagesConfig.PARTIES_UNAVAILABLE);
+                return;
+            }
+
             final Party party = partyCache.getParty(playerRef.getUuid());
             if (party == null) {
                 player.sendMessage(MessagesConfig.NOT_IN_A_PARTY);
@@ -61,22 +64,11 @@ public class PartyDisbandSubCommand extends AbstractAsyncCommand {
                 return;
             }
 
-            // Collect member UUIDs and Players before removing party
-            java.util.Set<java.util.UUID> memberUuids = new java.util.HashSet<>(party.getMembers());
-            java.util.List<Player> memberPlayers = new java.util.ArrayList<>();
-            for (Player p : world.getPlayers()) {
-                if (p != null && memberUuids.contains(p.getUuid())) {
-                    memberPlayers.add(p);
-                }
-            }
-
             partyCache.remove(party);
-            party.sendNotification(Message.raw("Party"), MessagesConfig.PARTY_DISBAND, NotificationStyle.Success);
+            party.sendNotification(MessagesConfig.PARTY_DISBAND_NOTIFICATION);
 
-            // Clear filters for all members after removing party
-            for (Player memberPlayer : memberPlayers) {
-                PartyMapFilterListener.updateFilter(memberPlayer);
-            }
+            // Clear filters for all members (in any world) after removing party
+            PartyMapFilterListener.updatePartyFilters(party);
         });
 
         return CompletableFuture.completedFuture(null);
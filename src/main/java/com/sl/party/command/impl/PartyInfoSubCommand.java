@@ -7,7 +7,6 @@ import com.hypixel.hytale.server.core.command.system.CommandContext;
 import com.hypixel.hytale.server.core.command.system.basecommands.AbstractAsyncCommand;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
-import com.hypixel.hytale.server.core.universe.Universe;
 import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import com.sl.party.cache.PartyCache;
@@ -59,7 +58,7 @@ public class PartyInfoSubCommand extends AbstractAsyncCommand {
             }
 
             // Get leader name (try online first, then stored name)
-            PlayerRef leaderRef = Universe.get().getPlayer(party.getOwnerId());
+            PlayerRef leaderRef = partyCache.getOnlinePlayer(party.getOwnerId());
             String leaderName;
             if (leaderRef != null && leaderRef.isValid()) {
                 leaderName = leaderRef.getUsername();
@@ -74,16 +73,12 @@ public class PartyInfoSubCommand extends AbstractAsyncCommand {
             playerRef.sendMessage(Message.raw("Leader: " + leaderName).color(Color.WHITE));
             playerRef.sendMessage(Message.raw("Members (" + party.getMembers().size() + "):").color(Color.WHITE));
 
-            boolean needsSave = false;
             for (UUID memberId : party.getMembers()) {
-                PlayerRef memberRef = Universe.get().getPlayer(memberId);
+                PlayerRef memberRef = partyCache.getOnlinePlayer(memberId);
                 if (memberRef != null && memberRef.isValid()) {
-                    // Update stored name for online players (keeps names fresh)
+                    // Update stored name for online players (keeps names fresh, recorded as a rename)
                     String currentName = memberRef.getUsername();
-                    if (!currentName.equals(party.getMemberName(memberId))) {
-                        party.setMemberName(memberId, currentName);
-                        needsSave = true;
-                    }
+                    party.setMemberName(memberId, currentName);
                     String status = memberId.equals(party.getOwnerId()) ? " [Leader]" : "";
                     playerRef.sendMessage(Message.raw("  - " + currentName + status).color(Color.GREEN));
                 } else {
@@ -94,9 +89,6 @@ public class PartyInfoSubCommand extends AbstractAsyncCommand {
                     playerRef.sendMessage(Message.raw("  - " + offlineName + status + " (offline)").color(Color.GRAY));
                 }
             }
-            if (needsSave) {
-                partyCache.save();
-            }
 
             String publicStatus = party.isPublish() ? "Public" : "Private";
             playerRef.sendMessage(Message.raw("Status: " + publicStatus).color(Color.WHITE));
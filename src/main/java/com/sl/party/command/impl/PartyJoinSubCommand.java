@@ -17,6 +17,7 @@ import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import com.hypixel.hytale.server.core.util.EventTitleUtil;
 import com.sl.party.cache.PartyCache;
+import com.sl.party.chat.PartyChatChannel;
 import com.sl.party.listener.PartyMapFilterListener;
 import com.sl.party.messages.MessagesConfig;
 import com.sl.party.model.Party;
@@ -28,11 +29,13 @@ import java.util.concurrent.CompletableFuture;
 public class PartyJoinSubCommand extends AbstractAsyncCommand {
 
     private final PartyCache partyCache;
+    private final PartyChatChannel chatChannel;
     private RequiredArg<PlayerRef> targetRefArg;
 
-    public PartyJoinSubCommand(PartyCache partyCache) {
+    public PartyJoinSubCommand(PartyCache partyCache, PartyChatChannel chatChannel) {
         super("join", "Join in a party");
         this.partyCache = partyCache;
+        this.chatChannel = chatChannel;
 
         this.targetRefArg = this.withRequiredArg("player", "target player", ArgTypes.PLAYER_REF);
     }
@@ -61,6 +64,11 @@ public class PartyJoinSubCommand extends AbstractAsyncCommand {
             final PlayerRef playerRef = store.getComponent(reference, PlayerRef.getComponentType());
             if (playerRef == null) return;
 
+            if (partyCache.isClosed()) {
+                commandContext.sendMessage(MessagesConfig.PARTIES_UNAVAILABLE);
+                return;
+            }
+
             if (partyCache.hasParty(playerRef.getUuid())) {
                 playerRef.sendMessage(MessagesConfig.ALREADY_IN_A_PARTY);
                 return;
@@ -87,14 +95,14 @@ public class PartyJoinSubCommand extends AbstractAsyncCommand {
                 party.removeInvite(playerRef.getUuid());
             }
 
-            party.addMember(playerRef.getUuid(), playerRef.getUsername());
-            partyCache.save();  // Persist change
+            party.addMember(playerRef.getUuid(), playerRef.getUsername());  // Recorded by the cache's change listener
 
             // Update map filters for all party members to exclude each other from default icons
-            PartyMapFilterListener.updatePartyFilters(party, world);
+            PartyMapFilterListener.updatePartyFilters(party);
 
             party.sendMessage(Message.raw(playerRef.getUsername() + " joined the party!").color(Color.GREEN));
             playerRef.sendMessage(Message.raw("You joined " + targetRef.getUsername() + "'s party!").color(Color.GREEN));
+            chatChannel.replay(playerRef, party);
         });
 
         return CompletableFuture.completedFuture(null);
@@ -7,7 +7,6 @@ import com.hypixel.hytale.server.core.command.system.CommandContext;
 import com.hypixel.hytale.server.core.command.system.basecommands.AbstractAsyncCommand;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
-import com.hypixel.hytale.server.core.universe.Universe;
 import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import com.sl.party.cache.PartyCache;
@@ -56,6 +55,11 @@ public class PartyKickSubCommand extends AbstractAsyncCommand {
             final PlayerRef playerRef = store.getComponent(reference, PlayerRef.getComponentType());
             if (playerRef == null) return;
 
+            if (partyCache.isClosed()) {
+                commandContext.sendMessage(MessagesConfig.PARTIES_UNAVAILABLE);
+                return;
+            }
+
             final Party party = partyCache.getParty(playerRef.getUuid());
             if (party == null) {
                 player.sendMessage(MessagesConfig.NOT_IN_A_PARTY);
@@ -117,25 +121,19 @@ public class PartyKickSubCommand extends AbstractAsyncCommand {
 
             // Remove the player from party
             party.removeMember(targetUuid);
-            partyCache.save();
 
             // Check if target is online
-            PlayerRef targetRef = Universe.get().getPlayer(targetUuid);
+            PlayerRef targetRef = partyCache.getOnlinePlayer(targetUuid);
 
-            // Update map filter for kicked player if online
+            // Update map filter for kicked player if online (in any world)
+            PartyMapFilterListener.updateFilter(targetUuid);
             if (targetRef != null && targetRef.isValid()) {
-                for (Player p : world.getPlayers()) {
-                    if (p != null && targetUuid.equals(p.getUuid())) {
-                        PartyMapFilterListener.updateFilter(p);
-                        break;
-                    }
-                }
                 // Notify kicked player if online
                 targetRef.sendMessage(Message.raw("You have been kicked from the party").color(Color.RED));
             }
 
             // Update filters for remaining party members
-            PartyMapFilterListener.updatePartyFilters(party, world);
+            PartyMapFilterListener.updatePartyFilters(party);
 
             // Notify party
             party.sendMessage(Message.raw(actualName + " was kicked from the party").color(Color.YELLOW));
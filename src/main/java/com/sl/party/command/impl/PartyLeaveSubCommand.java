@@ -54,6 +54,11 @@ public class PartyLeaveSubCommand extends AbstractAsyncCommand {
             final PlayerRef playerRef = store.getComponent(reference, PlayerRef.getComponentType());
             if (playerRef == null) return;
 
+            if (partyCache.isClosed()) {
+                commandContext.sendMessage(MessagesConfig.PARTIES_UNAVAILABLE);
+                return;
+            }
+
             final Party party = partyCache.getParty(playerRef.getUuid());
             if(party == null) {
                 player.sendMessage(MessagesConfig.NOT_IN_A_PARTY);
@@ -65,12 +70,11 @@ public class PartyLeaveSubCommand extends AbstractAsyncCommand {
                 return;
             }
 
-            party.removeMember(playerRef.getUuid());
-            partyCache.save();  // Persist change
+            party.removeMember(playerRef.getUuid());  // Recorded by the cache's change listener
 
             // Clear filter for leaving player and update remaining members
             PartyMapFilterListener.updateFilter(player);
-            PartyMapFilterListener.updatePartyFilters(party, world);
+            PartyMapFilterListener.updatePartyFilters(party);
 
             party.sendMessage(Message.raw(playerRef.getUsername() + " left the party").color(Color.YELLOW));
             playerRef.sendMessage(Message.raw("You left the party").color(Color.YELLOW));
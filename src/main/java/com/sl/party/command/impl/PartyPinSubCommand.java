@@ -0,0 +1,104 @@
+package com.sl.party.command.impl;
+
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.basecommands.AbstractAsyncCommand;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import com.sl.party.cache.PartyCache;
+import com.sl.party.compass.PartyMemberMarkerProvider;
+import com.sl.party.messages.MessagesConfig;
+import com.sl.party.model.Party;
+import org.checkerframework.checker.nullness.compatqual.NonNullDecl;
+
+import java.awt.*;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Pins a party member on your own compass, so they stay visible in parties too big to show everyone
+ */
+public class PartyPinSubCommand extends AbstractAsyncCommand {
+
+    private final PartyCache partyCache;
+
+    public PartyPinSubCommand(PartyCache partyCache) {
+        super("pin", "Pin or unpin a party member on your compass");
+        this.partyCache = partyCache;
+
+        setAllowsExtraArguments(true);
+    }
+
+    @Override
+    protected boolean canGeneratePermission() {
+        return false;
+    }
+
+    @NonNullDecl
+    @Override
+    protected CompletableFuture<Void> executeAsync(@NonNullDecl CommandContext commandContext) {
+        if (!commandContext.isPlayer()) {
+            commandContext.sendMessage(MessagesConfig.ONLY_PLAYER);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final Player player = (Player) commandContext.sender();
+        final Ref<EntityStore> reference = player.getReference();
+        if (reference == null) return CompletableFuture.completedFuture(null);
+
+        final Store<EntityStore> store = reference.getStore();
+        final World world = store.getExternalData().getWorld();
+
+        world.execute(() -> {
+            final PlayerRef playerRef = store.getComponent(reference, PlayerRef.getComponentType());
+            if (playerRef == null) return;
+
+            final Party party = partyCache.getParty(playerRef.getUuid());
+            if (party == null) {
+                playerRef.sendMessage(MessagesConfig.NOT_IN_A_PARTY);
+                return;
+            }
+
+            // Parse player name from input: "/party pin PlayerName"
+            final String[] parts = commandContext.getInputString().split(" ");
+            if (parts.length < 3) {
+                playerRef.sendMessage(Message.raw("Usage: /party pin <player>").color(Color.RED));
+                return;
+            }
+            final String targetName = parts[2];
+
+            UUID targetUuid = null;
+            String actualName = null;
+            for (Map.Entry<UUID, String> entry : party.getMemberNames().entrySet()) {
+                if (entry.getValue().equalsIgnoreCase(targetName) && party.isMember(entry.getKey())) {
+                    targetUuid = entry.getKey();
+                    actualName = entry.getValue();
+                    break;
+                }
+            }
+
+            if (targetUuid == null) {
+                playerRef.sendMessage(Message.raw("Player '" + targetName + "' not found in your party!").color(Color.RED));
+                return;
+            }
+
+            if (targetUuid.equals(playerRef.getUuid())) {
+                playerRef.sendMessage(MessagesConfig.CANT_PIN_YOURSELF);
+                return;
+            }
+
+            switch (PartyMemberMarkerProvider.INSTANCE.togglePin(playerRef.getUuid(), targetUuid, party.getMembers())) {
+                case PINNED -> playerRef.sendMessage(Message.raw(actualName + " is pinned on your compass").color(Color.GREEN));
+                case UNPINNED -> playerRef.sendMessage(Message.raw(actualName + " is no longer pinned").color(Color.YELLOW));
+                case FULL -> playerRef.sendMessage(MessagesConfig.TOO_MANY_PINS);
+            }
+        });
+
+        return CompletableFuture.completedFuture(null);
+    }
+}
@@ -51,6 +51,11 @@ public class PartyPublicSubCommand extends AbstractAsyncCommand {
             final PlayerRef playerRef = store.getComponent(reference, PlayerRef.getComponentType());
             if (playerRef == null) return;
 
+            if (partyCache.isClosed()) {
+                commandContext.sendMessage(MessagesConfig.PARTIES_UNAVAILABLE);
+                return;
+            }
+
             if (!partyCache.hasParty(playerRef.getUuid())) {
                 player.sendMessage(MessagesConfig.NOT_IN_A_PARTY);
                 return;
@@ -62,8 +67,7 @@ public class PartyPublicSubCommand extends AbstractAsyncCommand {
                 return;
             }
 
-            party.setPublish(!party.isPublish());
-            partyCache.save();  // Persist change
+            party.setPublish(!party.isPublish());  // Recorded by the cache's change listener
 
             final String status = party.isPublish() ? "PUBLIC" : "PRIVATE";
             party.sendMessage(Message.raw("Party is now " + status).color(Color.YELLOW));
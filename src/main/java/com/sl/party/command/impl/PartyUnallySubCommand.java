@@ -0,0 +1,96 @@
+package com.sl.party.command.impl;
+
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.basecommands.AbstractAsyncCommand;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import com.sl.party.alliance.AllianceManager;
+import com.sl.party.cache.PartyCache;
+import com.sl.party.messages.MessagesConfig;
+import com.sl.party.model.Party;
+import org.checkerframework.checker.nullness.compatqual.NonNullDecl;
+
+import java.awt.*;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Takes the party out of its alliance; the remaining parties stay allied with each other
+ */
+public class PartyUnallySubCommand extends AbstractAsyncCommand {
+
+    private final PartyCache partyCache;
+    private final AllianceManager alliances;
+
+    public PartyUnallySubCommand(PartyCache partyCache, AllianceManager alliances) {
+        super("unally", "Leave your party's alliance");
+        this.partyCache = partyCache;
+        this.alliances = alliances;
+    }
+
+    @Override
+    protected boolean canGeneratePermission() {
+        return false;
+    }
+
+    @NonNullDecl
+    @Override
+    protected CompletableFuture<Void> executeAsync(@NonNullDecl CommandContext commandContext) {
+        if (!commandContext.isPlayer()) {
+            commandContext.sendMessage(MessagesConfig.ONLY_PLAYER);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final Player player = (Player) commandContext.sender();
+        final Ref<EntityStore> reference = player.getReference();
+        if (reference == null) return CompletableFuture.completedFuture(null);
+
+        final Store<EntityStore> store = reference.getStore();
+        final World world = store.getExternalData().getWorld();
+
+        world.execute(() -> {
+            final PlayerRef playerRef = store.getComponent(reference, PlayerRef.getComponentType());
+            if (playerRef == null) return;
+
+            if (partyCache.isClosed()) {
+                commandContext.sendMessage(MessagesConfig.PARTIES_UNAVAILABLE);
+                return;
+            }
+
+            final Party party = partyCache.getParty(playerRef.getUuid());
+            if (party == null) {
+                playerRef.sendMessage(MessagesConfig.NOT_IN_A_PARTY);
+                return;
+            }
+
+            if (!party.isLeader(playerRef.getUuid())) {
+                playerRef.sendMessage(MessagesConfig.ONLY_OWNER_CAN_ALLY);
+                return;
+            }
+
+            final List<UUID> allies = alliances.getAllies(party.getId());
+            if (!alliances.leave(party.getId())) {
+                playerRef.sendMessage(MessagesConfig.NOT_IN_AN_ALLIANCE);
+                return;
+            }
+
+            party.sendMessage(Message.raw("Your party left its alliance").color(Color.YELLOW));
+            final String leaderName = party.getMemberName(party.getOwnerId()) != null
+                ? party.getMemberName(party.getOwnerId()) : playerRef.getUsername();
+            for (UUID allyId : allies) {
+                final Party ally = partyCache.getResidentParty(allyId);
+                if (ally != null) {
+                    ally.sendMessage(Message.raw(leaderName + "'s party left the alliance").color(Color.YELLOW));
+                }
+            }
+        });
+
+        return CompletableFuture.completedFuture(null);
+    }
+}
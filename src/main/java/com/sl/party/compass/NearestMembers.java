@@ -0,0 +1,102 @@
+package com.sl.party.compass;
+
+import com.hypixel.hytale.math.vector.Vector3d;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Picks which members of a big party one viewer gets markers for: the leader and the viewer's
+ * pinned members always, then the nearest others until the limit is reached.
+ *
+ * The nearest ones are found with a bounded max-heap of the current best candidates, so a party
+ * of N costs O(N log K) per viewer instead of sorting everyone. Arrays are reused between calls.
+ */
+final class NearestMembers {
+
+    private int[] heapIndex = new int[16];
+    private double[] heapDistance = new double[16];
+    private int heapSize;
+    private boolean[] selected = new boolean[16];
+
+    /**
+     * Marks the members to show; read the result with {@link #isSelected(int)}
+     */
+    void select(PartyPositionSnapshot.Positions positions, UUID viewerUuid, double viewerX, double viewerZ,
+                Set<UUID> pinned, int limit) {
+        final int size = positions.size();
+        if (selected.length < size) {
+            selected = new boolean[size];
+        }
+
+        // Leader and pinned members take their slots first
+        int slots = limit;
+        for (int i = 0; i < size; i++) {
+            final UUID memberId = positions.getMember(i);
+            selected[i] = !memberId.equals(viewerUuid)
+                && (memberId.equals(positions.getLeaderId()) || pinned.contains(memberId));
+            if (selected[i]) slots--;
+        }
+        if (slots <= 0) return;
+
+        if (heapIndex.length < slots) {
+            heapIndex = new int[slots];
+            heapDistance = new double[slots];
+        }
+        heapSize = 0;
+        for (int i = 0; i < size; i++) {
+            if (selected[i] || positions.getMember(i).equals(viewerUuid)) continue;
+
+            final Vector3d position = positions.getTransform(i).getPosition();
+            final double dx = position.getX() - viewerX;
+            final double dz = position.getZ() - viewerZ;
+            final double distance = dx * dx + dz * dz;
+            if (heapSize < slots) {
+                push(i, distance);
+            } else if (distance < heapDistance[0]) {
+                // Closer than the farthest one kept so far
+                heapIndex[0] = i;
+                heapDistance[0] = distance;
+                siftDown(0);
+            }
+        }
+        for (int n = 0; n < heapSize; n++) {
+            selected[heapIndex[n]] = true;
+        }
+    }
+
+    boolean isSelected(int i) {
+        return selected[i];
+    }
+
+    private void push(int index, double distance) {
+        int child = heapSize++;
+        while (child > 0) {
+            final int parent = (child - 1) >>> 1;
+            if (heapDistance[parent] >= distance) break;
+            heapIndex[child] = heapIndex[parent];
+            heapDistance[child] = heapDistance[parent];
+            child = parent;
+        }
+        heapIndex[child] = index;
+        heapDistance[child] = distance;
+    }
+
+    private void siftDown(int parent) {
+        final int index = heapIndex[parent];
+        final double distance = heapDistance[parent];
+        while (true) {
+            int child = 2 * parent + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && heapDistance[child + 1] > heapDistance[child]) {
+                child++;
+            }
+            if (heapDistance[child] <= distance) break;
+            heapIndex[parent] = heapIndex[child];
+            heapDistance[parent] = heapDistance[child];
+            parent = child;
+        }
+        heapIndex[parent] = index;
+        heapDistance[parent] = distance;
+    }
+}
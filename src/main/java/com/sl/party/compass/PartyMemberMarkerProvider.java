@@ -1,24 +1,43 @@
 package com.sl.party.compass;
 
-import com.hypixel.hytale.math.vector.Transform;
-import com.hypixel.hytale.protocol.packets.worldmap.MapMarker;
 import com.hypixel.hytale.server.core.asset.type.gameplay.GameplayConfig;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.WorldMapTracker;
 import com.hypixel.hytale.server.core.universe.world.worldmap.WorldMapManager;
-import com.hypixel.hytale.server.core.util.PositionUtil;
 import com.sl.party.SLPartyPlugin;
 import com.sl.party.cache.PartyCache;
+import com.sl.party.config.PartyConfig;
 import com.sl.party.model.Party;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shows party members on the compass and map, through {@link WorldMapTracker#trySendMarker} with
+ * view radius -1. Which markers are rebuilt and submitted is decided per viewer (see {@link ViewerMarkers}).
+ */
 public class PartyMemberMarkerProvider implements WorldMapManager.MarkerProvider {
 
     public static final PartyMemberMarkerProvider INSTANCE = new PartyMemberMarkerProvider();
 
     // Use player icon for party members
-    private static final String MARKER_ICON = "Player.png";
+    static final String MARKER_ICON = "Player.png";
+
+    private final Map<UUID, ViewerMarkers> viewers = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<UUID>> pins = new ConcurrentHashMap<>();  // Viewer -> pinned members, for the session
+
+    /**
+     * Outcome of {@link #togglePin}
+     */
+    public enum PinResult {
+        PINNED,
+        UNPINNED,
+        FULL
+    }
 
     private PartyMemberMarkerProvider() {
     }
@@ -34,46 +53,51 @@ public class PartyMemberMarkerProvider implements WorldMapManager.MarkerProvider
         // Get viewer's UUID from player
         final PlayerRef viewerRef = player.getPlayerRef();
         if (viewerRef == null) return;
-        final java.util.UUID viewerUuid = viewerRef.getUuid();
+        final UUID viewerUuid = viewerRef.getUuid();
 
         final Party party = partyCache.getParty(viewerUuid);
-        if (party == null || party.getMembers().size() <= 1) return;
-
-        // Iterate over all party members
-        for (PlayerRef partyMember : party.getPlayers()) {
-            // Skip showing marker for yourself
-            if (partyMember.getUuid().equals(viewerUuid)) {
-                continue;
+        if (party == null || party.getMembers().size() <= 1) {
+            // Forget what was shown while the viewer was still in a party, the tracker removes it
+            final ViewerMarkers shown = viewers.get(viewerUuid);
+            if (shown != null) {
+                shown.update(world, viewerUuid, playerChunkX, playerChunkZ, null, Set.of(), settings(), worldMapTracker::trySendMarker);
+                if (shown.isEmpty()) viewers.remove(viewerUuid, shown);
             }
+            return;
+        }
 
-            // Skip invalid members
-            if (!partyMember.isValid()) {
-                continue;
-            }
+        // Members and markers are captured once per tick and shared by the whole party,
+        // and only the ones that changed since the last send go out to this viewer
+        final PartyPositionSnapshot.Positions positions = PartyPositionSnapshot.current()
+            .get(party, world, SLPartyPlugin.getInstance().getPresence());
+        viewers.computeIfAbsent(viewerUuid, key -> new ViewerMarkers())
+            .update(world, viewerUuid, playerChunkX, playerChunkZ, positions,
+                pins.getOrDefault(viewerUuid, Set.of()), settings(), worldMapTracker::trySendMarker);
+    }
 
-            final Transform transform = partyMember.getTransform();
-            if (transform == null) continue;
-
-            // Add party indicator to name for visual distinction
-            final String memberName = "[Party] " + partyMember.getUsername();
-            final String markerId = "party-" + partyMember.getUuid().toString();
-
-            // Create MapMarker directly (like PlayerCompass does)
-            MapMarker marker = new MapMarker(
-                    markerId,
-                    memberName,
-                    MARKER_ICON,
-                    PositionUtil.toTransformPacket(transform),
-                    null  // no context menu
-            );
-
-            // KEY: Use viewRadius = -1 to show on compass!
-            worldMapTracker.trySendMarker(
-                    -1,  // -1 = show on compass
-                    playerChunkX,
-                    playerChunkZ,
-                    marker
-            );
-        }
+    /**
+     * Drops what was sent to a player (on disconnect, their client forgets the markers anyway)
+     */
+    public void forgetViewer(UUID viewerUuid) {
+        viewers.remove(viewerUuid);
+        pins.remove(viewerUuid);
+    }
+
+    /**
+     * Pins or unpins a member on the viewer's compass. Pinned members stay visible in parties
+     * too big to show everyone. Pins of players no longer in the party are dropped here.
+     */
+    public PinResult togglePin(UUID viewerUuid, UUID memberId, Set<UUID> partyMembers) {
+        final Set<UUID> pinned = pins.computeIfAbsent(viewerUuid, key -> ConcurrentHashMap.newKeySet());
+        pinned.retainAll(partyMembers);
+        if (pinned.remove(memberId)) return PinResult.UNPINNED;
+        if (pinned.size() >= settings().getMaxPinned()) return PinResult.FULL;
+
+        pinned.add(memberId);
+        return PinResult.PINNED;
+    }
+
+    private static PartyConfig.Markers settings() {
+        return SLPartyPlugin.getInstance().getPartyConfig().getMarkers();
     }
 }
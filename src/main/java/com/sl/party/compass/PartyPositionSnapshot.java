@@ -0,0 +1,227 @@
+package com.sl.party.compass;
+
+import com.hypixel.hytale.math.vector.Transform;
+import com.hypixel.hytale.math.vector.Vector3d;
+import com.hypixel.hytale.math.vector.Vector3f;
+import com.hypixel.hytale.protocol.packets.worldmap.MapMarker;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.util.PositionUtil;
+import com.sl.party.model.Party;
+import com.sl.party.presence.PresenceRegistry;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Positions and markers of party members, captured once per party per tick and shared by every
+ * viewer in the party. Without it each viewer looked up every member and built its own markers,
+ * so a party of N did N^2 lookups and allocations per refresh; now it is N.
+ *
+ * The parts of a member's marker that rarely change (id, label) are kept in a {@link MemberMarker}
+ * until the member is renamed or hasn't been seen for a while, and the last built {@link MapMarker}
+ * is reused as long as the member stands still. Sent markers are never modified, since the packet
+ * may still be waiting to be encoded.
+ *
+ * Only members in the snapshot's world are captured, found through the {@link PresenceRegistry};
+ * a position in another world means nothing on this world's map, so those members get no marker.
+ *
+ * One snapshot per world thread (worlds tick on their own thread), so no locking.
+ * {@link PartyPositionSnapshotSystem} advances the tick, which makes all captured parties stale.
+ */
+final class PartyPositionSnapshot {
+
+    // Parties nobody viewed (and members nobody saw) for this many ticks are dropped
+    private static final int STALE_TICKS = 200;
+
+    private static final ThreadLocal<PartyPositionSnapshot> CURRENT = ThreadLocal.withInitial(PartyPositionSnapshot::new);
+
+    private final Map<UUID, Positions> byParty = new HashMap<>();
+    private final Map<UUID, MemberMarker> byMember = new HashMap<>();
+    private long tick;
+
+    private PartyPositionSnapshot() {
+    }
+
+    /**
+     * Snapshot of the calling world thread
+     */
+    static PartyPositionSnapshot current() {
+        return CURRENT.get();
+    }
+
+    long getTick() {
+        return tick;
+    }
+
+    void nextTick() {
+        tick++;
+        if (tick % STALE_TICKS == 0) {
+            byParty.values().removeIf(positions -> tick - positions.tick > STALE_TICKS);
+            byMember.values().removeIf(member -> tick - member.tick > STALE_TICKS);
+        }
+    }
+
+    /**
+     * Member positions of the party in the current tick, captured on first use
+     */
+    Positions get(Party party, World world, PresenceRegistry presences) {
+        Positions positions = byParty.computeIfAbsent(party.getId(), key -> new Positions());
+        if (positions.tick != tick || positions.size < 0) {
+            positions.capture(party, world, presences, this);
+            positions.tick = tick;
+        }
+        return positions;
+    }
+
+    private MemberMarker memberMarker(UUID memberId, String username) {
+        MemberMarker member = byMember.get(memberId);
+        if (member == null) {
+            member = new MemberMarker(memberId);
+            byMember.put(memberId, member);
+        }
+        member.setUsername(username);
+        member.tick = tick;
+        return member;
+    }
+
+    /**
+     * Cached marker parts of one member
+     */
+    static final class MemberMarker {
+
+        private final String id;
+        private String username;
+        private String label;
+        private long tick;
+
+        // Last built marker and what it was built from
+        private MapMarker marker;
+        private double x;
+        private double y;
+        private double z;
+        private float yaw;
+
+        private MemberMarker(UUID memberId) {
+            this.id = idOf(memberId);
+        }
+
+        private static String idOf(UUID memberId) {
+            return "party-" + memberId;
+        }
+
+        private void setUsername(String username) {
+            if (label != null && Objects.equals(this.username, username)) return;
+            this.username = username;
+            this.label = "[Party] " + username;
+            this.marker = null;
+        }
+
+        private MapMarker markerAt(Transform transform) {
+            final Vector3d position = transform.getPosition();
+            final Vector3f rotation = transform.getRotation();
+            final float currentYaw = rotation != null ? rotation.getYaw() : 0f;
+            if (marker != null && position.getX() == x && position.getY() == y && position.getZ() == z && currentYaw == yaw) {
+                return marker;
+            }
+
+            marker = new MapMarker(
+                id,
+                label,
+                PartyMemberMarkerProvider.MARKER_ICON,
+                PositionUtil.toTransformPacket(transform),
+                null  // no context menu
+            );
+            x = position.getX();
+            y = position.getY();
+            z = position.getZ();
+            yaw = currentYaw;
+            return marker;
+        }
+    }
+
+    /**
+     * Online members of one party with their position for this tick. Arrays are reused between ticks;
+     * markers are only built for members some viewer actually needs to be sent.
+     */
+    static final class Positions {
+
+        private long tick;
+        private int size = -1;
+        private UUID leaderId;
+        private UUID[] members = new UUID[4];
+        private Transform[] transforms = new Transform[4];
+        private MemberMarker[] markers = new MemberMarker[4];
+
+        private void capture(Party party, World world, PresenceRegistry presences, PartyPositionSnapshot snapshot) {
+            leaderId = party.getLeaderId();
+
+            int count = 0;
+            for (UUID memberId : party.getMembers()) {
+                final PresenceRegistry.Presence presence = presences.get(memberId);
+                if (presence == null || presence.getWorld() != world) continue;  // Offline or in another world
+
+                final PlayerRef player = presence.getPlayerRef();
+                final Transform transform = presence.getTransform();
+                if (player == null || !player.isValid() || transform == null) continue;
+
+                if (count == members.length) {
+                    members = Arrays.copyOf(members, count * 2);
+                    transforms = Arrays.copyOf(transforms, count * 2);
+                    markers = Arrays.copyOf(markers, count * 2);
+                }
+                members[count] = memberId;
+                transforms[count] = transform;
+                markers[count] = snapshot.memberMarker(memberId, player.getUsername());
+                count++;
+            }
+            // Drop references to members who went offline
+            for (int i = count; i < size; i++) {
+                members[i] = null;
+                transforms[i] = null;
+                markers[i] = null;
+            }
+            size = count;
+        }
+
+        int size() {
+            return size;
+        }
+
+        UUID getLeaderId() {
+            return leaderId;
+        }
+
+        /**
+         * Index of the member in this snapshot, -1 if they aren't in it
+         */
+        int indexOf(UUID memberId) {
+            for (int i = 0; i < size; i++) {
+                if (members[i].equals(memberId)) return i;
+            }
+            return -1;
+        }
+
+        UUID getMember(int i) {
+            return members[i];
+        }
+
+        String getName(int i) {
+            return markers[i].username;
+        }
+
+        Transform getTransform(int i) {
+            return transforms[i];
+        }
+
+        /**
+         * Marker of the member at their current position, shared by all viewers
+         */
+        MapMarker getMarker(int i) {
+            return markers[i].markerAt(transforms[i]);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.sl.party.compass;
+
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.component.system.tick.TickingSystem;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+
+/**
+ * Advances the party position snapshot of the ticking world once per tick, so markers
+ * are captured again with the members' new positions
+ */
+public class PartyPositionSnapshotSystem extends TickingSystem<EntityStore> {
+
+    @Override
+    public void tick(float dt, int systemIndex, Store<EntityStore> store) {
+        PartyPositionSnapshot.current().nextTick();
+    }
+}
@@ -0,0 +1,209 @@
+package com.sl.party.compass;
+
+import com.hypixel.hytale.math.vector.Transform;
+import com.hypixel.hytale.math.vector.Vector3d;
+import com.hypixel.hytale.math.vector.Vector3f;
+import com.hypixel.hytale.protocol.packets.worldmap.MapMarker;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.WorldMapTracker;
+import com.sl.party.config.PartyConfig;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Party markers one viewer has been sent, with the position, yaw and name each was sent with.
+ *
+ * Every shown member's marker is submitted to the viewer's {@link WorldMapTracker} on each update
+ * with view radius -1, the compass path; the tracker removes markers that weren't submitted during
+ * an update, so members that are no longer shown (left the party, went offline) just stop being submitted.
+ * A member's marker is only rebuilt when they moved or turned past the configured thresholds, got
+ * renamed, or the keep-alive ran out; until then the marker last sent is submitted again, which the
+ * tracker sees as unchanged.
+ *
+ * Far members are checked less often than near ones (see {@link PartyConfig.LodLevel}), and at most
+ * {@code maxMarkersPerUpdate} new or changed markers are submitted per update. In parties bigger than
+ * {@code maxMarkersPerViewer} only the leader, the viewer's pinned members and the nearest others are
+ * shown (see {@link NearestMembers}).
+ *
+ * Only used from the viewer's world thread.
+ */
+final class ViewerMarkers {
+
+    private static final int CHUNK_SHIFT = 5;  // 32 blocks per chunk
+    private static final int COMPASS = -1;      // View radius that shows a marker on the compass
+
+    private final Map<UUID, SentMarker> sent = new HashMap<>();
+    private final NearestMembers nearest = new NearestMembers();
+    private World world;
+    private int pass;
+
+    /**
+     * Last state sent for one member
+     */
+    private static final class SentMarker {
+        private double x;
+        private double y;
+        private double z;
+        private float yaw;
+        private String name;
+        private long sentAt;
+        private int pass;
+        private MapMarker marker;
+    }
+
+    /**
+     * Where markers are submitted, with the arguments of {@link WorldMapTracker#trySendMarker}
+     */
+    @FunctionalInterface
+    interface MarkerSink {
+        void trySendMarker(int viewRadius, int playerChunkX, int playerChunkZ, MapMarker marker);
+    }
+
+    /**
+     * Submits the markers of the members shown to this viewer, rebuilding the ones that changed.
+     * {@code positions} is null when the viewer has no party to show anymore.
+     */
+    void update(World world, UUID viewerUuid, int viewerChunkX, int viewerChunkZ, PartyPositionSnapshot.Positions positions,
+                Set<UUID> pinned, PartyConfig.Markers settings, MarkerSink tracker) {
+        if (this.world != world) {
+            // The client starts a new map on world change, nothing of ours is shown there
+            sent.clear();
+            this.world = world;
+        }
+
+        pass++;
+        int kept = 0;  // Sent markers still shown after this update
+        final long now = System.nanoTime();
+        if (positions != null && positions.size() > 0) {
+            final int size = positions.size();
+            final int budget = settings.getMaxMarkersPerUpdate();
+            int changed = 0;
+            // Raid-sized party: only the leader, pinned and nearest members; the others are no longer submitted
+            final boolean limited = size - 1 > settings.getMaxMarkersPerViewer();
+            if (limited) {
+                selectNearest(viewerUuid, viewerChunkX, viewerChunkZ, positions, pinned, settings.getMaxMarkersPerViewer());
+            }
+            // Start at a different member each update, so with a full budget nobody waits forever
+            final int start = Math.floorMod(pass, size);
+            for (int n = 0; n < size; n++) {
+                final int i = (start + n) % size;
+                final UUID memberId = positions.getMember(i);
+                if (memberId.equals(viewerUuid)) continue;
+                if (limited && !nearest.isSelected(i)) continue;
+
+                SentMarker last = sent.get(memberId);
+                if (last != null) {
+                    last.pass = pass;
+                    kept++;
+                    if (changed >= budget
+                        || !isDue(memberId, positions.getTransform(i), viewerChunkX, viewerChunkZ, settings)
+                        || !hasChanged(last, positions, i, settings, now)) {
+                        // Same marker as last time, so it stays shown without being sent again
+                        tracker.trySendMarker(COMPASS, viewerChunkX, viewerChunkZ, last.marker);
+                        continue;
+                    }
+                } else {
+                    if (changed >= budget) continue;  // Over budget, shown in a later update
+                    last = new SentMarker();
+                    sent.put(memberId, last);
+                    kept++;
+                }
+                remember(last, positions, i, now);
+                last.pass = pass;
+                changed++;
+                tracker.trySendMarker(COMPASS, viewerChunkX, viewerChunkZ, last.marker);
+            }
+        }
+
+        if (kept < sent.size()) {
+            // Not submitted in this update, so the tracker removes their markers
+            for (Iterator<Map.Entry<UUID, SentMarker>> it = sent.entrySet().iterator(); it.hasNext(); ) {
+                if (it.next().getValue().pass != pass) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private void selectNearest(UUID viewerUuid, int viewerChunkX, int viewerChunkZ,
+                               PartyPositionSnapshot.Positions positions, Set<UUID> pinned, int limit) {
+        double viewerX;
+        double viewerZ;
+        final int viewerIndex = positions.indexOf(viewerUuid);
+        if (viewerIndex >= 0) {
+            final Vector3d position = positions.getTransform(viewerIndex).getPosition();
+            viewerX = position.getX();
+            viewerZ = position.getZ();
+        } else {
+            // Center of the viewer's chunk
+            viewerX = (viewerChunkX << CHUNK_SHIFT) + (1 << CHUNK_SHIFT) / 2;
+            viewerZ = (viewerChunkZ << CHUNK_SHIFT) + (1 << CHUNK_SHIFT) / 2;
+        }
+        nearest.select(positions, viewerUuid, viewerX, viewerZ, pinned, limit);
+    }
+
+    boolean isEmpty() {
+        return sent.isEmpty();
+    }
+
+    /**
+     * Level of detail: far members are only looked at every few updates, spread over
+     * different updates per member so they don't all come due together
+     */
+    private boolean isDue(UUID memberId, Transform transform,
+                          int viewerChunkX, int viewerChunkZ, PartyConfig.Markers settings) {
+        final Vector3d position = transform.getPosition();
+        final int memberChunkX = (int) Math.floor(position.getX()) >> CHUNK_SHIFT;
+        final int memberChunkZ = (int) Math.floor(position.getZ()) >> CHUNK_SHIFT;
+        final int distance = Math.max(Math.abs(memberChunkX - viewerChunkX), Math.abs(memberChunkZ - viewerChunkZ));
+
+        final int interval = settings.getUpdateInterval(distance);
+        return interval == 1 || Math.floorMod(pass + memberId.hashCode(), interval) == 0;
+    }
+
+    private static boolean hasChanged(SentMarker last, PartyPositionSnapshot.Positions positions, int i,
+                                      PartyConfig.Markers settings, long now) {
+        if (now - last.sentAt >= settings.getKeepAliveNanos()) return true;
+        if (!Objects.equals(positions.getName(i), last.name)) return true;
+
+        final Transform transform = positions.getTransform(i);
+        final Vector3d position = transform.getPosition();
+        final double dx = position.getX() - last.x;
+        final double dy = position.getY() - last.y;
+        final double dz = position.getZ() - last.z;
+        final double threshold = settings.getMoveThreshold();
+        if (dx * dx + dy * dy + dz * dz > threshold * threshold) return true;
+
+        return yawDelta(yawOf(transform), last.yaw) > settings.getYawThresholdRadians();
+    }
+
+    private static void remember(SentMarker last, PartyPositionSnapshot.Positions positions, int i, long now) {
+        final Transform transform = positions.getTransform(i);
+        final Vector3d position = transform.getPosition();
+        last.x = position.getX();
+        last.y = position.getY();
+        last.z = position.getZ();
+        last.yaw = yawOf(transform);
+        last.name = positions.getName(i);
+        last.sentAt = now;
+        last.marker = positions.getMarker(i);
+    }
+
+    private static float yawOf(Transform transform) {
+        final Vector3f rotation = transform.getRotation();
+        return rotation != null ? rotation.getYaw() : 0f;
+    }
+
+    /**
+     * Smallest angle between two yaws, in radians
+     */
+    private static double yawDelta(float a, float b) {
+        double delta = Math.abs(a - b) % (2 * Math.PI);
+        return delta > Math.PI ? 2 * Math.PI - delta : delta;
+    }
+}
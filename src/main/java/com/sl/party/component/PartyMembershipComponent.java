@@ -0,0 +1,69 @@
+package com.sl.party.component;
+
+import com.hypixel.hytale.component.Component;
+import com.hypixel.hytale.component.ComponentType;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import com.sl.party.alliance.AllianceManager;
+
+/**
+ * Party membership of a player entity, as the party's compact handle (see {@link com.sl.party.model.Party#getHandle()})
+ * and the party's alliance index (see {@link AllianceManager}).
+ * Kept in sync by {@link PartyMembershipTracker}; not persisted with the entity.
+ */
+public class PartyMembershipComponent implements Component<EntityStore> {
+
+    public static final int NO_PARTY = 0;
+
+    private static ComponentType<EntityStore, PartyMembershipComponent> componentType;
+
+    private int partyHandle;
+    private int allianceIndex;
+
+    public PartyMembershipComponent() {
+        this(NO_PARTY, AllianceManager.NO_ALLIANCE);
+    }
+
+    public PartyMembershipComponent(int partyHandle, int allianceIndex) {
+        this.partyHandle = partyHandle;
+        this.allianceIndex = allianceIndex;
+    }
+
+    public static ComponentType<EntityStore, PartyMembershipComponent> getComponentType() {
+        return componentType;
+    }
+
+    /**
+     * Set once by the plugin when the component is registered
+     */
+    public static void setComponentType(ComponentType<EntityStore, PartyMembershipComponent> type) {
+        componentType = type;
+    }
+
+    public int getPartyHandle() {
+        return partyHandle;
+    }
+
+    public void setPartyHandle(int partyHandle) {
+        this.partyHandle = partyHandle;
+    }
+
+    public int getAllianceIndex() {
+        return allianceIndex;
+    }
+
+    public void setAllianceIndex(int allianceIndex) {
+        this.allianceIndex = allianceIndex;
+    }
+
+    /**
+     * Whether both entities are in the same party
+     */
+    public boolean isSameParty(PartyMembershipComponent other) {
+        return partyHandle != NO_PARTY && other != null && partyHandle == other.partyHandle;
+    }
+
+    @Override
+    public PartyMembershipComponent clone() {
+        return new PartyMembershipComponent(partyHandle, allianceIndex);
+    }
+}
@@ -0,0 +1,122 @@
+package com.sl.party.component;
+
+import com.hypixel.hytale.component.Holder;
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.server.core.event.events.player.AddPlayerToWorldEvent;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+import com.sl.party.alliance.AllianceManager;
+import com.sl.party.cache.MembershipListener;
+import com.sl.party.cache.PartyCache;
+import com.sl.party.model.Party;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps {@link PartyMembershipComponent} on player entities in sync with the party cache and alliances:
+ * set when a player is added to a world, updated on the player's world thread when they
+ * join or leave a party.
+ */
+public class PartyMembershipTracker implements MembershipListener {
+
+    private final PartyCache partyCache;
+    private final AllianceManager alliances;
+
+    public PartyMembershipTracker(PartyCache partyCache, AllianceManager alliances) {
+        this.partyCache = partyCache;
+        this.alliances = alliances;
+    }
+
+    /**
+     * Attaches the component before the player entity enters the world (also on world changes)
+     */
+    public void onPlayerAddedToWorld(AddPlayerToWorldEvent event) {
+        final Holder<EntityStore> holder = event.getHolder();
+        if (holder == null) return;
+
+        final PlayerRef playerRef = holder.getComponent(PlayerRef.getComponentType());
+        if (playerRef == null) return;
+
+        final Party party = partyCache.getParty(playerRef.getUuid());
+        holder.putComponent(PartyMembershipComponent.getComponentType(),
+            new PartyMembershipComponent(handleOf(party), allianceIndexOf(party)));
+    }
+
+    /**
+     * Refreshes every online member of the party (e.g. after it got or lost an alliance index) and runs
+     * {@code refreshed} once all of their components are updated, on the world thread of the last one
+     */
+    public void refreshParty(UUID partyId, Runnable refreshed) {
+        final Party party = partyCache.getResidentParty(partyId);
+        if (party == null) {
+            refreshed.run();  // Nobody online
+            return;
+        }
+        final Set<UUID> members = party.getMembers();
+        // One extra count so it can't finish while updates are still being scheduled
+        final AtomicInteger pending = new AtomicInteger(members.size() + 1);
+        final Runnable memberDone = () -> {
+            if (pending.decrementAndGet() == 0) {
+                refreshed.run();
+            }
+        };
+        for (UUID memberId : members) {
+            update(memberId, memberDone);
+        }
+        memberDone.run();
+    }
+
+    @Override
+    public void onMembershipChanged(UUID playerId) {
+        update(playerId, () -> {
+        });
+    }
+
+    /**
+     * Updates the player's component on their world thread, then runs {@code done} (right away if there is no entity)
+     */
+    private void update(UUID playerId, Runnable done) {
+        final PlayerRef playerRef = partyCache.getOnlinePlayer(playerId);
+        final Ref<EntityStore> reference = playerRef != null ? playerRef.getReference() : null;
+        if (reference == null || !reference.isValid()) {
+            // Offline or not in a world, set when they enter one
+            done.run();
+            return;
+        }
+
+        final Store<EntityStore> store = reference.getStore();
+        final World world = store.getExternalData().getWorld();
+        world.execute(() -> {
+            try {
+                if (!reference.isValid()) return;
+
+                // Read the party now rather than when scheduled, so quick join/leave sequences end up current
+                final Party party = partyCache.getParty(playerId);
+                final int handle = handleOf(party);
+                final int allianceIndex = allianceIndexOf(party);
+                final PartyMembershipComponent component = store.getComponent(reference, PartyMembershipComponent.getComponentType());
+                if (component != null) {
+                    component.setPartyHandle(handle);
+                    component.setAllianceIndex(allianceIndex);
+                } else {
+                    store.putComponent(reference, PartyMembershipComponent.getComponentType(),
+                        new PartyMembershipComponent(handle, allianceIndex));
+                }
+            } finally {
+                done.run();
+            }
+        });
+    }
+
+    private static int handleOf(Party party) {
+        return party != null ? party.getHandle() : PartyMembershipComponent.NO_PARTY;
+    }
+
+    private int allianceIndexOf(Party party) {
+        return party != null ? alliances.indexOf(party.getId()) : AllianceManager.NO_ALLIANCE;
+    }
+}
@@ -0,0 +1,256 @@
+package com.sl.party.config;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Plugin configuration, stored in config.json next to the party data.
+ * Missing keys keep their defaults; the file is rewritten so new keys show up for admins.
+ */
+public class PartyConfig {
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private Storage storage = new Storage();
+    private Cache cache = new Cache();
+    private Markers markers = new Markers();
+    private Chat chat = new Chat();
+
+    public Storage getStorage() {
+        return storage;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Markers getMarkers() {
+        return markers;
+    }
+
+    public Chat getChat() {
+        return chat;
+    }
+
+    /**
+     * Load config from the data folder, creating it with defaults if missing
+     */
+    public static PartyConfig load(Path dataFolder, Logger logger) {
+        Path configFile = dataFolder.resolve("config.json");
+        PartyConfig config = null;
+
+        if (Files.exists(configFile)) {
+            try (Reader reader = Files.newBufferedReader(configFile)) {
+                config = GSON.fromJson(reader, PartyConfig.class);
+            } catch (IOException | JsonParseException e) {
+                logger.log(Level.WARNING, "Failed to read config, using defaults: " + e.getMessage());
+            }
+        }
+        if (config == null) {
+            config = new PartyConfig();
+        }
+        if (config.storage == null) {
+            config.storage = new Storage();
+        }
+        if (config.cache == null) {
+            config.cache = new Cache();
+        }
+        if (config.markers == null) {
+            config.markers = new Markers();
+        }
+        if (config.chat == null) {
+            config.chat = new Chat();
+        }
+
+        try {
+            Files.createDirectories(dataFolder);
+            try (Writer writer = Files.newBufferedWriter(configFile)) {
+                GSON.toJson(config, writer);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to write config: " + e.getMessage());
+        }
+
+        return config;
+    }
+
+    /**
+     * Persistence settings
+     */
+    public static class Storage {
+        private String backend = "file";      // "file" (parties.bin + journal, all in memory) or "kv" (parties.kv, can evict offline parties)
+        private long flushIntervalMs = 2000;  // How often dirty parties are written to disk
+        private int queueCapacity = 4096;     // Changes buffered before an early flush
+        private boolean journal = true;       // File backend: append changes to parties.journal between parties.bin snapshots
+        private long compactThresholdBytes = 4L * 1024 * 1024;  // Journal size that triggers a new snapshot
+        private boolean parallelLoad = true;  // Decode large snapshots on all cores at startup
+        private long shutdownTimeoutMs = 10000;  // Longest the server waits for the final save on shutdown
+
+        public String getBackend() {
+            return backend != null ? backend : "file";
+        }
+
+        public long getFlushIntervalMs() {
+            return Math.max(50, flushIntervalMs);
+        }
+
+        public int getQueueCapacity() {
+            return Math.max(16, queueCapacity);
+        }
+
+        public boolean isJournal() {
+            return journal;
+        }
+
+        public long getCompactThresholdBytes() {
+            return Math.max(64 * 1024, compactThresholdBytes);
+        }
+
+        public boolean isParallelLoad() {
+            return parallelLoad;
+        }
+
+        public long getShutdownTimeoutMs() {
+            return Math.max(1000, shutdownTimeoutMs);
+        }
+    }
+
+    /**
+     * In-memory cache settings
+     */
+    public static class Cache {
+        private int maxOfflineParties = -1;  // Fully offline parties kept in memory before eviction (kv backend), -1 keeps all
+
+        public int getMaxOfflineParties() {
+            return Math.max(-1, maxOfflineParties);
+        }
+    }
+
+    /**
+     * Compass/map marker settings
+     */
+    public static class Markers {
+        private double moveThreshold = 1.0;       // Blocks a member moves before their marker is sent again
+        private double yawThresholdDegrees = 15;  // Turn before their marker is sent again
+        private long keepAliveMs = 5000;          // Unchanged markers are still resent this often
+        private List<LodLevel> lodLevels = new ArrayList<>(List.of(  // Nearest first
+            new LodLevel(4, 1),
+            new LodLevel(16, 2),
+            new LodLevel(64, 5)
+        ));
+        private int farEveryUpdates = 20;        // Members beyond the last level
+        private int maxMarkersPerUpdate = 32;    // Markers sent to one viewer per update, the rest wait
+        private int maxMarkersPerViewer = 24;    // Members shown at once: leader, pinned, then the nearest
+        private int maxPinned = 4;               // Members one player can pin with /party pin
+
+        public double getMoveThreshold() {
+            return Math.max(0, moveThreshold);
+        }
+
+        public double getYawThresholdRadians() {
+            return Math.toRadians(Math.max(0, yawThresholdDegrees));
+        }
+
+        public long getKeepAliveNanos() {
+            return Math.max(250, keepAliveMs) * 1_000_000L;
+        }
+
+        /**
+         * Every how many updates a member this many chunks away from the viewer is checked
+         */
+        public int getUpdateInterval(int chunkDistance) {
+            if (lodLevels != null) {
+                // Indexed, this runs per member per viewer update and must not allocate an iterator
+                for (int i = 0; i < lodLevels.size(); i++) {
+                    final LodLevel level = lodLevels.get(i);
+                    if (level != null && chunkDistance <= level.withinChunks) {
+                        return Math.max(1, level.everyUpdates);
+                    }
+                }
+            }
+            return Math.max(1, farEveryUpdates);
+        }
+
+        public int getMaxMarkersPerUpdate() {
+            return Math.max(1, maxMarkersPerUpdate);
+        }
+
+        public int getMaxMarkersPerViewer() {
+            return Math.max(1, maxMarkersPerViewer);
+        }
+
+        public int getMaxPinned() {
+            return Math.max(0, maxPinned);
+        }
+    }
+
+    /**
+     * Party chat settings
+     */
+    public static class Chat {
+        private int burst = 5;                 // Messages a player can send in a row
+        private double refillPerSecond = 1.0;  // Messages a player gets back per second after that
+        private long coalesceWindowMs = 50;    // Messages to one party within this window go out together
+        private int historySize = 20;          // Recent lines kept per party, 0 keeps none
+        private int replayLines = 10;          // Lines replayed to members who join or reconnect
+        private long replayMaxAgeMinutes = 60; // Older lines are not replayed
+        private boolean logToFile = false;     // Append all party chat to chat.log
+        private long logMaxBytes = 1024 * 1024;  // chat.log size at which it is rolled to chat.log.1
+
+        public int getBurst() {
+            return Math.max(1, burst);
+        }
+
+        public double getRefillPerSecond() {
+            return Math.max(0.01, refillPerSecond);
+        }
+
+        public long getCoalesceWindowMs() {
+            return Math.max(0, coalesceWindowMs);
+        }
+
+        public int getHistorySize() {
+            return Math.max(0, Math.min(1000, historySize));
+        }
+
+        public int getReplayLines() {
+            return Math.max(0, Math.min(getHistorySize(), replayLines));
+        }
+
+        public long getReplayMaxAgeSeconds() {
+            return Math.max(0, replayMaxAgeMinutes) * 60;
+        }
+
+        public boolean isLogToFile() {
+            return logToFile;
+        }
+
+        public long getLogMaxBytes() {
+            return Math.max(64 * 1024, logMaxBytes);
+        }
+    }
+
+    /**
+     * Members within this many chunks of the viewer are checked every n-th marker update
+     */
+    public static class LodLevel {
+        private int withinChunks;
+        private int everyUpdates;
+
+        public LodLevel(int withinChunks, int everyUpdates) {
+            this.withinChunks = withinChunks;
+            this.everyUpdates = everyUpdates;
+        }
+    }
+}
@@ -1,14 +1,16 @@
 package com.sl.party.listener;
 
+import com.hypixel.hytale.component.Ref;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import com.sl.party.SLPartyPlugin;
 import com.sl.party.cache.PartyCache;
 import com.sl.party.model.Party;
+import com.sl.party.presence.PresenceRegistry;
 
 import java.util.UUID;
-import java.util.function.Predicate;
 
 /**
  * Filter that excludes party members from default map player icons.
@@ -16,25 +18,6 @@ import java.util.function.Predicate;
  */
 public class PartyMapFilterListener {
 
-    /**
-     * Creates a filter for the given viewer that returns true for party members
-     * (causing them to be skipped by PlayerIconMarkerProvider)
-     */
-    public static Predicate<PlayerRef> createPartyFilter(UUID viewerUuid) {
-        return playerRef -> {
-            if (playerRef == null) return false;
-
-            final PartyCache partyCache = SLPartyPlugin.getInstance().getPartyCache();
-            if (partyCache == null) return false;
-
-            final Party viewerParty = partyCache.getParty(viewerUuid);
-            if (viewerParty == null) return false;
-
-            // Return true to SKIP this player from default icons if they're in the same party
-            return viewerParty.getMembers().contains(playerRef.getUuid());
-        };
-    }
-
     /**
      * Updates the map filter for a player to exclude party members
      */
@@ -53,7 +36,7 @@ public class PartyMapFilterListener {
         final Party party = partyCache.getParty(playerUuid);
         if (party != null && party.getMembers().size() > 1) {
             // Player is in a party with others - set filter to exclude party members
-            tracker.setPlayerMapFilter(createPartyFilter(playerUuid));
+            tracker.setPlayerMapFilter(new PartyMemberFilter(party));
         } else {
             // Player not in party or alone - clear filter
             tracker.setPlayerMapFilter(null);
@@ -61,18 +44,37 @@ public class PartyMapFilterListener {
     }
 
     /**
-     * Updates filters for all members of a party using the World to find Player objects
+     * Updates the map filter of a player who just entered a world. Called on that world's thread.
      */
-    public static void updatePartyFilters(Party party, World world) {
-        if (party == null || world == null) return;
+    public static void updateFilter(PlayerRef playerRef) {
+        final Ref<EntityStore> reference = playerRef.getReference();
+        if (reference == null || !reference.isValid()) return;
+
+        updateFilter(reference.getStore().getComponent(reference, Player.getComponentType()));
+    }
 
-        for (Player player : world.getPlayers()) {
-            if (player == null) continue;
+    /**
+     * Updates the map filter of an online player in whatever world they are, on that world's thread
+     */
+    public static void updateFilter(UUID playerUuid) {
+        final PresenceRegistry.Presence presence = SLPartyPlugin.getInstance().getPresence().get(playerUuid);
+        if (presence == null) return;  // Offline, set when they enter a world (see SLPartyPlugin)
+
+        final World world = presence.getWorld();
+        final PlayerRef playerRef = presence.getPlayerRef();
+        if (world == null || playerRef == null) return;
+
+        world.execute(() -> updateFilter(playerRef));
+    }
+
+    /**
+     * Updates filters for all members of a party, in every world
+     */
+    public static void updatePartyFilters(Party party) {
+        if (party == null) return;
 
-            UUID playerUuid = player.getUuid();
-            if (playerUuid != null && party.isMember(playerUuid)) {
-                updateFilter(player);
-            }
+        for (UUID memberId : party.getMembers()) {
+            updateFilter(memberId);
         }
     }
 }
@@ -0,0 +1,27 @@
+package com.sl.party.listener;
+
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.sl.party.model.Party;
+
+import java.util.function.Predicate;
+
+/**
+ * Map filter of a party member: true (hide from default player icons) for members of the same party.
+ *
+ * The world map evaluates it for every player and every viewer on each refresh, so it only reads
+ * the party's member set, an immutable snapshot that {@link Party} swaps on every membership change.
+ * One volatile read and one hash probe; joins and leaves show up without reinstalling the filter.
+ */
+final class PartyMemberFilter implements Predicate<PlayerRef> {
+
+    private final Party party;
+
+    PartyMemberFilter(Party party) {
+        this.party = party;
+    }
+
+    @Override
+    public boolean test(PlayerRef playerRef) {
+        return playerRef != null && party.getMembers().contains(playerRef.getUuid());
+    }
+}
@@ -1,6 +1,8 @@
 package com.sl.party.messages;
 
+import com.hypixel.hytale.protocol.packets.interface_.NotificationStyle;
 import com.hypixel.hytale.server.core.Message;
+import com.sl.party.broadcast.NotificationTemplate;
 
 import java.awt.*;
 
@@ -14,6 +16,7 @@ public final class MessagesConfig {
     }
 
     public static final Message ONLY_PLAYER = Message.raw("This command can only be used by players").color(Color.RED);
+    public static final Message PARTIES_UNAVAILABLE = Message.raw("Parties can't be changed while the server is shutting down").color(Color.RED);
 
     public static final Message ALREADY_IN_A_PARTY = Message.raw("You are already in a party").color(Color.RED);
     public static final Message NOT_IN_A_PARTY = Message.raw("You are not in a party").color(Color.RED);
@@ -22,6 +25,17 @@ public final class MessagesConfig {
     public static final Message ONLY_OWNER_CAN_DISBAND = Message.raw("Only the party leader can disband the party").color(Color.RED);
     public static final Message OWNER_CANT_LEAVE_PARTY = Message.raw("Party leader cannot leave. Use /party disband instead").color(Color.RED);
 
+    public static final Message ONLY_OWNER_CAN_ALLY = Message.raw("Only the party leader can manage alliances").color(Color.RED);
+    public static final Message CANT_ALLY_OWN_PARTY = Message.raw("You can't ally with your own party").color(Color.RED);
+    public static final Message ALREADY_ALLIED = Message.raw("Your parties are already allied").color(Color.RED);
+    public static final Message NOT_IN_AN_ALLIANCE = Message.raw("Your party is not in an alliance").color(Color.RED);
+    public static final Message ALLIANCE_REQUEST_SENT = Message.raw("Alliance request sent!").color(Color.GREEN);
+
+    public static final Message CANT_PIN_YOURSELF = Message.raw("You can't pin yourself").color(Color.RED);
+    public static final Message TOO_MANY_PINS = Message.raw("You can't pin more members, unpin one first").color(Color.RED);
+
+    public static final Message CHAT_RATE_LIMITED = Message.raw("You are sending party messages too fast").color(Color.RED);
+
     public static final Message PLAYER_NOT_FOUND = Message.raw("Player not found").color(Color.RED);
     public static final Message PLAYER_DONT_HAVE_PARTY = Message.raw("This player doesn't have a party").color(Color.RED);
 
@@ -30,6 +44,12 @@ public final class MessagesConfig {
     public static final Message PARTY_CREATED = Message.raw("Party created!").color(Color.GREEN);
     public static final Message PARTY_DISBAND = Message.raw("Party has been disbanded").color(Color.YELLOW);
 
+    // Party notifications: item shown as their icon, and the ones made of constants only
+    public static final String PARTY_ICON_ITEM = "copper_shield";
+    public static final Message PARTY_TITLE = Message.raw("Party");
+    public static final NotificationTemplate PARTY_DISBAND_NOTIFICATION =
+        new NotificationTemplate(PARTY_TITLE, PARTY_DISBAND, NotificationStyle.Success);
+
     public static final Message PARTY_INVITE_SENT = Message.raw("Invite sent!").color(Color.GREEN);
     public static final Message PARTY_INVITE_RECEIVED = Message.raw("You received a party invite! Use /party join <leader> to accept").color(Color.CYAN);
 
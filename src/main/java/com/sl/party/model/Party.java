@@ -3,30 +3,35 @@ package com.sl.party.model;
 import com.hypixel.hytale.protocol.SoundCategory;
 import com.hypixel.hytale.protocol.packets.interface_.NotificationStyle;
 import com.hypixel.hytale.server.core.Message;
-import com.hypixel.hytale.server.core.inventory.ItemStack;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
-import com.hypixel.hytale.server.core.universe.Universe;
-import com.hypixel.hytale.server.core.universe.world.SoundUtil;
-import com.hypixel.hytale.server.core.util.NotificationUtil;
+import com.sl.party.broadcast.NotificationTemplate;
+import com.sl.party.broadcast.PartyBroadcast;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Represents a party of players
+ * Represents a party of players.
+ * Safe to share between world threads: members are an immutable copy-on-write set,
+ * so reads never lock, and membership writes are serialized on the party instance.
+ * Online members are held the same way, so fan-out (messages, notifications) is a plain list walk.
  */
 public class Party {
 
     private final UUID id;
     private final UUID ownerId;
-    private final Set<UUID> members;
+    private volatile Set<UUID> members;  // Immutable snapshot, replaced on every change
     private final Map<UUID, String> memberNames;  // Store usernames for offline display
     private final Set<UUID> invites;
-    private boolean publish;
+    private volatile boolean publish;
+    private volatile PartyChangeListener changeListener;
+    private volatile int handle;  // Compact id while resident in the cache, 0 otherwise
+    private volatile List<PlayerRef> onlinePlayers = List.of();  // Immutable, kept by the cache on connect/disconnect
 
     public Party(UUID ownerId) {
         this(UUID.randomUUID(), ownerId);
@@ -38,10 +43,9 @@ public class Party {
     public Party(UUID id, UUID ownerId) {
         this.id = id;
         this.ownerId = ownerId;
-        this.members = new HashSet<>();
-        this.members.add(ownerId);
-        this.memberNames = new HashMap<>();
-        this.invites = new HashSet<>();
+        this.members = Set.of(ownerId);
+        this.memberNames = new ConcurrentHashMap<>();
+        this.invites = ConcurrentHashMap.newKeySet();
         this.publish = false;
     }
 
@@ -57,6 +61,21 @@ public class Party {
         return ownerId;
     }
 
+    /**
+     * Compact int id assigned by the cache while the party is resident (0 = none).
+     * Stored on member entities so hot paths can compare parties without lookups.
+     */
+    public int getHandle() {
+        return handle;
+    }
+
+    public void setHandle(int handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * Returns an immutable snapshot of the members
+     */
     public Set<UUID> getMembers() {
         return members;
     }
@@ -69,8 +88,21 @@ public class Party {
         return publish;
     }
 
-    public void setPublish(boolean publish) {
+    public synchronized void setPublish(boolean publish) {
+        if (this.publish == publish) return;
         this.publish = publish;
+
+        PartyChangeListener listener = changeListener;
+        if (listener != null) {
+            listener.onPublishChanged(this, publish);
+        }
+    }
+
+    /**
+     * Sets the listener notified about membership, name and publish changes
+     */
+    public void setChangeListener(PartyChangeListener changeListener) {
+        this.changeListener = changeListener;
     }
 
     public boolean isLeader(UUID playerID) {
@@ -89,17 +121,27 @@ public class Party {
     }
 
     public void addMember(UUID playerId) {
-        if (playerId != null) {
-            members.add(playerId);
-        }
+        addMember(playerId, null);
     }
 
-    public void addMember(UUID playerId, String username) {
+    public synchronized void addMember(UUID playerId, String username) {
         if (playerId != null) {
-            members.add(playerId);
+            if (members.contains(playerId)) {
+                setMemberName(playerId, username);
+                return;
+            }
+
             if (username != null) {
                 memberNames.put(playerId, username);
             }
+            Set<UUID> updated = new HashSet<>(members);
+            updated.add(playerId);
+            members = Set.copyOf(updated);
+
+            PartyChangeListener listener = changeListener;
+            if (listener != null) {
+                listener.onMemberAdded(this, playerId);
+            }
         }
     }
 
@@ -111,9 +153,14 @@ public class Party {
         return memberNames;
     }
 
-    public void setMemberName(UUID playerId, String username) {
+    public synchronized void setMemberName(UUID playerId, String username) {
         if (playerId != null && username != null) {
-            memberNames.put(playerId, username);
+            if (username.equals(memberNames.put(playerId, username))) return;
+
+            PartyChangeListener listener = changeListener;
+            if (listener != null) {
+                listener.onMemberRenamed(this, playerId, username);
+            }
         }
     }
 
@@ -123,9 +170,17 @@ public class Party {
         }
     }
 
-    public void removeMember(UUID playerId) {
-        if (playerId != null) {
-            members.remove(playerId);
+    public synchronized void removeMember(UUID playerId) {
+        if (playerId != null && members.contains(playerId)) {
+            Set<UUID> updated = new HashSet<>(members);
+            updated.remove(playerId);
+            members = Set.copyOf(updated);
+            setOffline(playerId);
+
+            PartyChangeListener listener = changeListener;
+            if (listener != null) {
+                listener.onMemberRemoved(this, playerId);
+            }
         }
     }
 
@@ -135,33 +190,59 @@ public class Party {
         }
     }
 
+    // Broadcasts build their packet once and share it between all online members (see PartyBroadcast)
+
     public void sendMessage(Message message) {
-        getPlayers().forEach(playerRef -> playerRef.sendMessage(message));
+        PartyBroadcast.send(getPlayers(), PartyBroadcast.message(message));
     }
 
     public void sendNotification(Message title, Message subTitle, NotificationStyle notificationStyle) {
-        getPlayers().forEach(playerRef ->
-            NotificationUtil.sendNotification(
-                playerRef.getPacketHandler(),
-                title,
-                subTitle,
-                "",
-                new ItemStack("copper_shield").toPacket(),
-                notificationStyle
-            )
-        );
+        PartyBroadcast.send(getPlayers(), PartyBroadcast.notification(title, subTitle, notificationStyle));
+    }
+
+    /**
+     * Sends a notification made of constants, its packet is only built once
+     */
+    public void sendNotification(NotificationTemplate template) {
+        PartyBroadcast.send(getPlayers(), template.getPacket());
     }
 
     public void sendSound(int index, SoundCategory soundCategory) {
-        getPlayers().forEach(playerRef ->
-            SoundUtil.playSoundEvent2dToPlayer(playerRef, index, soundCategory, 1f, 1f)
-        );
+        PartyBroadcast.send(getPlayers(), PartyBroadcast.sound(index, soundCategory));
     }
 
+    /**
+     * Online members, an immutable snapshot kept up to date by the cache (no universe lookups)
+     */
     public List<PlayerRef> getPlayers() {
-        return members.stream()
-            .map(playerId -> Universe.get().getPlayer(playerId))
-            .filter(playerRef -> playerRef != null && playerRef.isValid())
-            .toList();
+        return onlinePlayers;
+    }
+
+    /**
+     * Adds a connected member to the online players (replacing an older connection of theirs)
+     */
+    public synchronized void setOnline(PlayerRef playerRef) {
+        if (playerRef == null || !members.contains(playerRef.getUuid())) return;
+
+        List<PlayerRef> updated = new ArrayList<>(onlinePlayers.size() + 1);
+        for (PlayerRef online : onlinePlayers) {
+            if (!online.getUuid().equals(playerRef.getUuid())) {
+                updated.add(online);
+            }
+        }
+        updated.add(playerRef);
+        onlinePlayers = List.copyOf(updated);
+    }
+
+    public synchronized void setOffline(UUID playerId) {
+        List<PlayerRef> current = onlinePlayers;
+        for (int i = 0; i < current.size(); i++) {
+            if (current.get(i).getUuid().equals(playerId)) {
+                List<PlayerRef> updated = new ArrayList<>(current);
+                updated.remove(i);
+                onlinePlayers = List.copyOf(updated);
+                return;
+            }
+        }
     }
 }
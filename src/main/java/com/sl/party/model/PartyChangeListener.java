@@ -0,0 +1,18 @@
+package com.sl.party.model;
+
+import java.util.UUID;
+
+/**
+ * Receives changes made to a party (used to keep cache indexes and the storage journal in sync).
+ * Called while the party is locked, so calls for one party arrive in the order the changes happened.
+ */
+public interface PartyChangeListener {
+
+    void onMemberAdded(Party party, UUID playerId);
+
+    void onMemberRemoved(Party party, UUID playerId);
+
+    void onMemberRenamed(Party party, UUID playerId, String username);
+
+    void onPublishChanged(Party party, boolean publish);
+}
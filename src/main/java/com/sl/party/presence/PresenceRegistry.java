@@ -0,0 +1,105 @@
+package com.sl.party.presence;
+
+import com.hypixel.hytale.math.vector.Transform;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Universe-wide record of which world every online player is in and where they were last seen.
+ * {@link PresenceSystem} refreshes it once per world tick, so party features can find members in
+ * any world with one lookup instead of scanning the worlds' player lists.
+ *
+ * An entry is only written by the thread of the world the player is in; other threads may read it.
+ */
+public class PresenceRegistry {
+
+    private final Map<UUID, Presence> presences = new ConcurrentHashMap<>();
+    private Consumer<PlayerRef> worldEntryListener = playerRef -> {
+    };
+
+    /**
+     * Where one online player is
+     */
+    public static final class Presence {
+
+        private volatile PlayerRef playerRef;
+        private volatile World world;
+        private volatile Transform transform;
+
+        public PlayerRef getPlayerRef() {
+            return playerRef;
+        }
+
+        public World getWorld() {
+            return world;
+        }
+
+        /**
+         * Last known transform; only read it on the thread of {@link #getWorld()}
+         */
+        public Transform getTransform() {
+            return transform;
+        }
+    }
+
+    /**
+     * Presence of the player, or null if they are not in a world
+     */
+    public Presence get(UUID playerId) {
+        return presences.get(playerId);
+    }
+
+    /**
+     * World the player is in, or null if they are not in one
+     */
+    public World getWorld(UUID playerId) {
+        final Presence presence = presences.get(playerId);
+        return presence != null ? presence.world : null;
+    }
+
+    /**
+     * Called on the world's thread when a player is first seen in a world (after connecting or changing worlds)
+     */
+    public void setWorldEntryListener(Consumer<PlayerRef> worldEntryListener) {
+        this.worldEntryListener = worldEntryListener;
+    }
+
+    /**
+     * Records the player in the given world. Called on that world's thread, every tick by
+     * {@link PresenceSystem} and right away when a player is ready in a world.
+     */
+    public void update(PlayerRef playerRef, World world) {
+        Presence presence = presences.get(playerRef.getUuid());
+        if (presence == null) {
+            presence = presences.computeIfAbsent(playerRef.getUuid(), key -> new Presence());
+        }
+        // Only write what changed, most ticks nothing does
+        if (presence.playerRef != playerRef) presence.playerRef = playerRef;
+        final Transform transform = playerRef.getTransform();
+        if (transform != null && presence.transform != transform) presence.transform = transform;
+        if (presence.world != world) {
+            presence.world = world;
+            worldEntryListener.accept(playerRef);
+        }
+    }
+
+    public void remove(UUID playerId) {
+        presences.remove(playerId);
+    }
+
+    /**
+     * Drops everyone recorded in a world that was removed
+     */
+    public void removeWorld(World world) {
+        presences.values().removeIf(presence -> presence.world == world);
+    }
+
+    public int size() {
+        return presences.size();
+    }
+}
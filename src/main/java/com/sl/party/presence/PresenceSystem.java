@@ -0,0 +1,31 @@
+package com.sl.party.presence;
+
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.component.system.tick.TickingSystem;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+
+/**
+ * Refreshes the presence of every player in the ticking world, once per tick
+ */
+public class PresenceSystem extends TickingSystem<EntityStore> {
+
+    private final PresenceRegistry registry;
+
+    public PresenceSystem(PresenceRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void tick(float dt, int systemIndex, Store<EntityStore> store) {
+        final World world = store.getExternalData().getWorld();
+        if (world == null) return;
+
+        for (PlayerRef playerRef : world.getPlayerRefs()) {
+            if (playerRef != null && playerRef.isValid()) {
+                registry.update(playerRef, world);
+            }
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package com.sl.party.storage;
+
+import com.sl.party.model.Party;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary snapshot format for parties (parties.bin).
+ *
+ * Layout, big-endian:
+ * <pre>
+ * int    magic "SLPB"
+ * short  version
+ * long   generation
+ * int    string count, then per string: short length + UTF-8 bytes
+ * int    party count, then per party:
+ *        int    record length (bytes after this field)
+ *        long*2 party id, long*2 leader id
+ *        byte   flags (bit 0 = public)
+ *        int    member count, then per member: long*2 id + int name index (-1 = unknown)
+ * int    alliance count, then per alliance: int party count + long*2 per party id
+ * int    CRC32C of everything above
+ * int    trailer magic "SLPE"
+ * </pre>
+ * UUIDs are stored as two longs and every username is stored once in the string table.
+ * Records are length-prefixed so a reader can find every record boundary without decoding,
+ * which lets large snapshots be decoded in parallel chunks. The checksum trailer lets a reader reject a snapshot that was torn or damaged on disk.
+ */
+final class BinaryPartyCodec {
+
+    static final int MAGIC = 0x534C5042;  // "SLPB"
+    static final short VERSION = 1;
+    private static final int TRAILER_MAGIC = 0x534C5045;  // "SLPE"
+    private static final int TRAILER_SIZE = 8;
+
+    private static final int FLAG_PUBLIC = 1;
+    private static final int NO_NAME = -1;
+
+    // Snapshots smaller than this decode faster on one thread
+    private static final int PARALLEL_THRESHOLD = 8192;
+    private static final int CHUNK_SIZE = 2048;
+
+    private BinaryPartyCodec() {
+        // Utility class
+    }
+
+    /**
+     * Decoded snapshot
+     */
+    record Snapshot(long generation, List<Party> parties, List<List<UUID>> alliances) {
+    }
+
+    static void write(FileChannel channel, long generation, Collection<Party> parties,
+                      List<List<UUID>> alliances) throws IOException {
+        Map<String, Integer> stringIndex = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        Buffer body = new Buffer(Math.max(1024, parties.size() * 96));
+
+        int partyCount = 0;
+        for (Party party : parties) {
+            int lengthPosition = body.reserveInt();
+            writeUuid(body, party.getId());
+            writeUuid(body, party.getLeaderId());
+            body.ensure(1).put((byte) (party.isPublish() ? FLAG_PUBLIC : 0));
+
+            var members = party.getMembers();
+            body.ensure(4).putInt(members.size());
+            for (UUID memberId : members) {
+                writeUuid(body, memberId);
+                String name = party.getMemberName(memberId);
+                int index = NO_NAME;
+                if (name != null) {
+                    index = stringIndex.computeIfAbsent(name, key -> {
+                        strings.add(key.getBytes(StandardCharsets.UTF_8));
+                        return strings.size() - 1;
+                    });
+                }
+                body.ensure(4).putInt(index);
+            }
+
+            body.putIntAt(lengthPosition, body.position() - lengthPosition - 4);
+            partyCount++;
+        }
+        writeAlliances(body, alliances);
+
+        int tableSize = 4;
+        for (byte[] bytes : strings) {
+            tableSize += 2 + bytes.length;
+        }
+        ByteBuffer header = ByteBuffer.allocate(4 + 2 + 8 + tableSize + 4);
+        header.putInt(MAGIC).putShort(VERSION).putLong(generation);
+        header.putInt(strings.size());
+        for (byte[] bytes : strings) {
+            header.putShort((short) bytes.length).put(bytes);
+        }
+        header.putInt(partyCount);
+        header.flip();
+
+        ByteBuffer content = body.flip();
+        CRC32C crc = new CRC32C();
+        crc.update(header.duplicate());
+        crc.update(content.duplicate());
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+        trailer.putInt((int) crc.getValue()).putInt(TRAILER_MAGIC).flip();
+
+        ByteBuffer[] buffers = {header, content, trailer};
+        while (trailer.hasRemaining()) {
+            channel.write(buffers);
+        }
+    }
+
+    /**
+     * Reads a snapshot. With {@code parallel}, large snapshots are decoded in chunks on the common pool.
+     */
+    static Snapshot read(FileChannel channel, boolean parallel) throws IOException {
+        // Read into the heap rather than mapping: a mapped file can't be renamed on Windows
+        // until the mapping is garbage collected, and snapshots are rotated right after loading
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Party snapshot too large");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            // Keep reading until full or EOF
+        }
+        buffer.flip();
+
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a party snapshot");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported party snapshot version " + version);
+            }
+            verifyChecksum(buffer);
+            long generation = buffer.getLong();
+
+            String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            int partyCount = buffer.getInt();
+            if (!parallel || partyCount < PARALLEL_THRESHOLD) {
+                List<Party> parties = new ArrayList<>(partyCount);
+                for (int i = 0; i < partyCount; i++) {
+                    int length = buffer.getInt();
+                    int end = buffer.position() + length;
+                    parties.add(readParty(buffer, strings));
+                    buffer.position(end);
+                }
+                return new Snapshot(generation, parties, readAlliances(buffer));
+            }
+
+            // Find record boundaries first (cheap, only reads the length prefixes)
+            int[] offsets = new int[partyCount];
+            int position = buffer.position();
+            for (int i = 0; i < partyCount; i++) {
+                offsets[i] = position + 4;
+                position = offsets[i] + buffer.getInt(position);
+            }
+            if (position > buffer.limit()) {
+                throw new IOException("Party snapshot is truncated");
+            }
+            List<List<UUID>> alliances = readAlliances(buffer.duplicate().position(position));
+
+            Party[] parties = new Party[partyCount];
+            int chunks = (partyCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                ByteBuffer view = buffer.duplicate();
+                int end = Math.min(partyCount, (chunk + 1) * CHUNK_SIZE);
+                for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+                    view.position(offsets[i]);
+                    parties[i] = readParty(view, strings);
+                }
+            });
+            return new Snapshot(generation, Arrays.asList(parties), alliances);
+        } catch (RuntimeException e) {
+            // BufferUnderflowException, bad string index, ... - the file is truncated or damaged
+            throw new IOException("Corrupt party snapshot: " + e, e);
+        }
+    }
+
+    /**
+     * Encodes one party as a self-contained record (names inline, no string table).
+     * Used for parties held in the offline tier.
+     */
+    static byte[] encode(Party party) {
+        Buffer buffer = new Buffer(64 + party.getMembers().size() * 32);
+        writeUuid(buffer, party.getId());
+        writeUuid(buffer, party.getLeaderId());
+        buffer.ensure(1).put((byte) (party.isPublish() ? FLAG_PUBLIC : 0));
+
+        var members = party.getMembers();
+        buffer.ensure(4).putInt(members.size());
+        for (UUID memberId : members) {
+            writeUuid(buffer, memberId);
+            String name = party.getMemberName(memberId);
+            if (name == null) {
+                buffer.ensure(2).putShort((short) NO_NAME);
+            } else {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                buffer.ensure(2 + bytes.length).putShort((short) bytes.length).put(bytes);
+            }
+        }
+
+        ByteBuffer content = buffer.flip();
+        byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Decodes a record written by {@link #encode(Party)}
+     */
+    static Party decode(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        UUID id = readUuid(buffer);
+        UUID leaderId = readUuid(buffer);
+        byte flags = buffer.get();
+
+        Party party = new Party(id, leaderId);
+        party.setPublish((flags & FLAG_PUBLIC) != 0);
+
+        int memberCount = buffer.getInt();
+        for (int i = 0; i < memberCount; i++) {
+            UUID memberId = readUuid(buffer);
+            short length = buffer.getShort();
+            String name = null;
+            if (length != NO_NAME) {
+                byte[] nameBytes = new byte[Short.toUnsignedInt(length)];
+                buffer.get(nameBytes);
+                name = new String(nameBytes, StandardCharsets.UTF_8);
+            }
+            party.addMember(memberId, name);
+        }
+        return party;
+    }
+
+    /**
+     * Reads only the member ids of an encoded record
+     */
+    static List<UUID> decodeMembers(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(33);  // party id, leader id, flags
+        int memberCount = buffer.getInt();
+        List<UUID> members = new ArrayList<>(memberCount);
+        for (int i = 0; i < memberCount; i++) {
+            members.add(readUuid(buffer));
+            short length = buffer.getShort();
+            if (length != NO_NAME) {
+                buffer.position(buffer.position() + Short.toUnsignedInt(length));
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Encodes the alliances as a self-contained record (the alliance record of the kv backend)
+     */
+    static byte[] encodeAlliances(List<List<UUID>> alliances) {
+        Buffer buffer = new Buffer(64);
+        writeAlliances(buffer, alliances);
+        ByteBuffer content = buffer.flip();
+        byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Decodes a record written by {@link #encodeAlliances(List)}
+     */
+    static List<List<UUID>> decodeAlliances(byte[] bytes) {
+        return readAlliances(ByteBuffer.wrap(bytes));
+    }
+
+    private static void writeAlliances(Buffer buffer, List<List<UUID>> alliances) {
+        buffer.ensure(4).putInt(alliances.size());
+        for (List<UUID> alliance : alliances) {
+            buffer.ensure(4).putInt(alliance.size());
+            for (UUID partyId : alliance) {
+                writeUuid(buffer, partyId);
+            }
+        }
+    }
+
+    private static List<List<UUID>> readAlliances(ByteBuffer buffer) {
+        int allianceCount = buffer.getInt();
+        List<List<UUID>> alliances = new ArrayList<>(allianceCount);
+        for (int i = 0; i < allianceCount; i++) {
+            int partyCount = buffer.getInt();
+            List<UUID> alliance = new ArrayList<>(partyCount);
+            for (int j = 0; j < partyCount; j++) {
+                alliance.add(readUuid(buffer));
+            }
+            alliances.add(alliance);
+        }
+        return alliances;
+    }
+
+    /**
+     * Checks the trailer and limits the buffer to the checksummed content
+     */
+    private static void verifyChecksum(ByteBuffer buffer) throws IOException {
+        int contentEnd = buffer.limit() - TRAILER_SIZE;
+        if (contentEnd < buffer.position()) {
+            throw new IOException("Party snapshot is truncated");
+        }
+        if (buffer.getInt(contentEnd + 4) != TRAILER_MAGIC) {
+            throw new IOException("Party snapshot is truncated (no trailer)");
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().position(0).limit(contentEnd));
+        if ((int) crc.getValue() != buffer.getInt(contentEnd)) {
+            throw new IOException("Party snapshot checksum mismatch");
+        }
+        buffer.limit(contentEnd);
+    }
+
+    private static Party readParty(ByteBuffer buffer, String[] strings) {
+        UUID id = readUuid(buffer);
+        UUID leaderId = readUuid(buffer);
+        byte flags = buffer.get();
+
+        Party party = new Party(id, leaderId);
+        party.setPublish((flags & FLAG_PUBLIC) != 0);
+
+        int memberCount = buffer.getInt();
+        for (int i = 0; i < memberCount; i++) {
+            UUID memberId = readUuid(buffer);
+            int nameIndex = buffer.getInt();
+            party.addMember(memberId, nameIndex == NO_NAME ? null : strings[nameIndex]);
+        }
+        return party;
+    }
+
+    private static void writeUuid(Buffer buffer, UUID uuid) {
+        buffer.ensure(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    /**
+     * Growable heap buffer for encoding
+     */
+    private static final class Buffer {
+        private ByteBuffer buffer;
+
+        Buffer(int capacity) {
+            this.buffer = ByteBuffer.allocate(capacity);
+        }
+
+        ByteBuffer ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+            return buffer;
+        }
+
+        int reserveInt() {
+            int position = buffer.position();
+            ensure(4).putInt(0);
+            return position;
+        }
+
+        void putIntAt(int position, int value) {
+            buffer.putInt(position, value);
+        }
+
+        int position() {
+            return buffer.position();
+        }
+
+        ByteBuffer flip() {
+            return buffer.flip();
+        }
+    }
+}
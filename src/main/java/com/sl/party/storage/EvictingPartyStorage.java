@@ -0,0 +1,41 @@
+package com.sl.party.storage;
+
+import com.sl.party.model.Party;
+
+import java.util.UUID;
+
+/**
+ * Storage backend that can hold evicted parties on disk, so the cache only keeps parties with
+ * online members in memory. An evicted party is handed over with {@link #upsert(Party)} and found
+ * again with {@link #findByMember(UUID)}; once it is resident again the cache calls {@link #markResident(UUID)}.
+ *
+ * Implementation: {@link KeyValuePartyStorage}.
+ */
+public interface EvictingPartyStorage extends PartyStorage {
+
+    /**
+     * Opens and recovers the storage, keeping every party in the storage for point lookups
+     * (instead of {@link #loadAll()})
+     */
+    void open();
+
+    /**
+     * Loads a party that isn't resident, or returns null if it doesn't exist
+     */
+    Party loadParty(UUID partyId);
+
+    /**
+     * Loads the non-resident party the player is a member of, or returns null if there is none
+     */
+    Party findByMember(UUID playerId);
+
+    /**
+     * Stores the current state of an evicted party and makes it available to point lookups
+     */
+    void upsert(Party party);
+
+    /**
+     * The party is resident in the cache again; the storage may drop any in-memory copy of it
+     */
+    void markResident(UUID partyId);
+}
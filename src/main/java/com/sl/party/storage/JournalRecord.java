@@ -0,0 +1,153 @@
+package com.sl.party.storage;
+
+import com.sl.party.model.Party;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A single change appended to the party journal (one JSON object per line)
+ */
+public class JournalRecord {
+
+    /**
+     * Kind of change
+     */
+    public enum Op {
+        HEADER,          // First line of a journal, ties it to a snapshot generation
+        CREATE,
+        MEMBER_ADDED,
+        MEMBER_REMOVED,
+        PUBLISH,
+        RENAME,
+        DISBAND,
+        ALLIANCES        // Every alliance, replacing the previous ones (not tied to one party)
+    }
+
+    Op op;
+    Long generation;  // HEADER only
+    String party;
+    String member;
+    String name;
+    Boolean value;    // PUBLISH only
+    List<List<String>> alliances;  // ALLIANCES only
+
+    public static JournalRecord header(long generation) {
+        JournalRecord record = new JournalRecord();
+        record.op = Op.HEADER;
+        record.generation = generation;
+        return record;
+    }
+
+    public static JournalRecord create(Party party) {
+        JournalRecord record = of(Op.CREATE, party.getId());
+        record.member = party.getLeaderId().toString();
+        record.name = party.getMemberName(party.getLeaderId());
+        return record;
+    }
+
+    public static JournalRecord memberAdded(Party party, UUID memberId) {
+        JournalRecord record = of(Op.MEMBER_ADDED, party.getId());
+        record.member = memberId.toString();
+        record.name = party.getMemberName(memberId);
+        return record;
+    }
+
+    public static JournalRecord memberRemoved(Party party, UUID memberId) {
+        JournalRecord record = of(Op.MEMBER_REMOVED, party.getId());
+        record.member = memberId.toString();
+        return record;
+    }
+
+    public static JournalRecord publish(Party party, boolean publish) {
+        JournalRecord record = of(Op.PUBLISH, party.getId());
+        record.value = publish;
+        return record;
+    }
+
+    public static JournalRecord rename(Party party, UUID memberId, String username) {
+        JournalRecord record = of(Op.RENAME, party.getId());
+        record.member = memberId.toString();
+        record.name = username;
+        return record;
+    }
+
+    public static JournalRecord disband(Party party) {
+        return of(Op.DISBAND, party.getId());
+    }
+
+    static JournalRecord alliances(List<List<UUID>> groups) {
+        JournalRecord record = new JournalRecord();
+        record.op = Op.ALLIANCES;
+        record.alliances = new ArrayList<>(groups.size());
+        for (List<UUID> group : groups) {
+            List<String> ids = new ArrayList<>(group.size());
+            for (UUID partyId : group) {
+                ids.add(partyId.toString());
+            }
+            record.alliances.add(ids);
+        }
+        return record;
+    }
+
+    /**
+     * The alliances of an ALLIANCES record
+     */
+    List<List<UUID>> allianceGroups() {
+        List<List<UUID>> groups = new ArrayList<>(alliances.size());
+        for (List<String> ids : alliances) {
+            List<UUID> group = new ArrayList<>(ids.size());
+            for (String partyId : ids) {
+                group.add(UUID.fromString(partyId));
+            }
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    private static JournalRecord of(Op op, UUID partyId) {
+        JournalRecord record = new JournalRecord();
+        record.op = op;
+        record.party = partyId.toString();
+        return record;
+    }
+
+    /**
+     * Applies this change to the loaded parties. Every operation is idempotent, so replaying
+     * changes that are already contained in the snapshot is harmless.
+     */
+    void apply(Map<UUID, Party> parties) {
+        if (op == Op.HEADER || op == Op.ALLIANCES) return;
+
+        UUID partyId = UUID.fromString(party);
+        Party target = parties.get(partyId);
+
+        switch (op) {
+            case CREATE -> {
+                if (target == null) {
+                    UUID leaderId = UUID.fromString(member);
+                    Party created = new Party(partyId, leaderId);
+                    created.setMemberName(leaderId, name);
+                    parties.put(partyId, created);
+                }
+            }
+            case MEMBER_ADDED -> {
+                if (target != null) target.addMember(UUID.fromString(member), name);
+            }
+            case MEMBER_REMOVED -> {
+                if (target != null) target.removeMember(UUID.fromString(member));
+            }
+            case PUBLISH -> {
+                if (target != null) target.setPublish(Boolean.TRUE.equals(value));
+            }
+            case RENAME -> {
+                if (target != null) target.setMemberName(UUID.fromString(member), name);
+            }
+            case DISBAND -> parties.remove(partyId);
+            default -> {
+            }
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.sl.party.storage;
+
+import com.sl.party.model.Party;
+import com.sl.party.storage.kv.KeyValueStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Key-value backend: every party is one record in parties.kv (see {@link KeyValueStore}),
+ * keyed by party id and encoded with {@link BinaryPartyCodec#encode(Party)}.
+ *
+ * A batch of changes becomes one upsert per changed party plus a single fsync, instead of a
+ * journal that is later folded into a whole-file snapshot. Evicted parties live only on disk;
+ * a member index (player -> party id) is kept in memory so lookups by member are one read.
+ * Existing parties.bin / parties.json data is imported until an import has completed, which is
+ * recorded with a marker record; the files of the file backend are only read, never changed.
+ * The alliances and the marker are records under keys no party can have.
+ *
+ * Resident parties are stored too, but stay out of the member index: their records lag behind
+ * by up to one flush interval, so a lookup by member must never return them. A party enters the
+ * index when it is evicted ({@link #upsert}) and leaves it with {@link #markResident}.
+ */
+public class KeyValuePartyStorage implements EvictingPartyStorage {
+
+    // Random party ids always have version bits set, so they never collide with these
+    private static final UUID ALLIANCES_KEY = new UUID(0L, 0L);
+    private static final UUID IMPORTED_KEY = new UUID(0L, 1L);
+
+    private final Path dataFolder;
+    private final Logger logger;
+    private final long compactThresholdBytes;
+    private final KeyValueStore store;
+    private final Map<UUID, UUID> memberIndex = new HashMap<>();  // Player UUID -> evicted party UUID
+    private final Set<UUID> evicted = new HashSet<>();            // Parties in the member index
+    private List<List<UUID>> alliances = List.of();
+
+    public KeyValuePartyStorage(Path dataFolder, Logger logger, long compactThresholdBytes) {
+        this.dataFolder = dataFolder;
+        this.logger = logger;
+        this.compactThresholdBytes = compactThresholdBytes;
+        this.store = new KeyValueStore(dataFolder.resolve("parties.kv"));
+    }
+
+    @Override
+    public synchronized void open() {
+        long startTime = System.nanoTime();
+
+        try {
+            long truncated = store.open();
+            if (truncated > 0) {
+                logger.log(Level.WARNING, "Cut off " + truncated + " damaged bytes at the end of parties.kv");
+            }
+            // Nothing is resident yet
+            for (UUID partyId : store.keys()) {
+                if (partyId.equals(ALLIANCES_KEY)) {
+                    alliances = BinaryPartyCodec.decodeAlliances(store.get(partyId));
+                } else if (!partyId.equals(IMPORTED_KEY)) {
+                    index(partyId, BinaryPartyCodec.decodeMembers(store.get(partyId)));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Failed to open parties.kv: " + e.getMessage());
+            return;
+        }
+
+        if (!store.contains(IMPORTED_KEY)) {
+            try {
+                importSnapshot();
+            } catch (IOException | RuntimeException e) {
+                // No marker, so the import is tried again on the next start
+                logger.log(Level.SEVERE, "Failed to import parties into parties.kv, retrying on next start: " + e.getMessage());
+            }
+        }
+
+        long elapsedMs = (System.nanoTime() - startTime) / 1_000_000;
+        logger.log(Level.INFO, String.format("Party storage ready: %d parties in %d ms", partyCount(), elapsedMs));
+    }
+
+    /**
+     * Copies the parties of the file backend into the store, then writes the marker.
+     * Parties already in the store were written after an earlier, failed import and are kept.
+     */
+    private void importSnapshot() throws IOException {
+        boolean snapshot = Files.exists(dataFolder.resolve("parties.bin")) || Files.exists(dataFolder.resolve("parties.bin.1"));
+        if (snapshot || Files.exists(dataFolder.resolve("parties.json"))) {
+            SnapshotPartyStorage snapshotStorage = new SnapshotPartyStorage(dataFolder, logger);
+            List<Party> parties = snapshotStorage.readAll();
+            int imported = 0;
+            for (Party party : parties) {
+                if (store.contains(party.getId())) continue;
+                put(party);
+                index(party.getId(), party.getMembers());
+                imported++;
+            }
+            if (!store.contains(ALLIANCES_KEY)) {
+                alliances = snapshotStorage.getAlliances();
+                store.put(ALLIANCES_KEY, BinaryPartyCodec.encodeAlliances(alliances));
+            }
+            logger.log(Level.INFO, "Imported " + imported + " parties into parties.kv");
+        }
+        // Parties first, the marker only once they are on disk
+        store.sync();
+        store.put(IMPORTED_KEY, new byte[0]);
+        store.sync();
+    }
+
+    @Override
+    public synchronized List<Party> loadAll() {
+        open();
+        List<Party> parties = new ArrayList<>(store.size());
+        for (UUID partyId : store.keys()) {
+            if (partyId.equals(ALLIANCES_KEY) || partyId.equals(IMPORTED_KEY)) continue;
+            Party party = loadParty(partyId);
+            if (party != null) {
+                parties.add(party);
+            }
+        }
+        // All of them are resident from now on
+        memberIndex.clear();
+        evicted.clear();
+        return parties;
+    }
+
+    @Override
+    public synchronized Party loadParty(UUID partyId) {
+        try {
+            byte[] encoded = store.get(partyId);
+            return encoded != null ? BinaryPartyCodec.decode(encoded) : null;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read party " + partyId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized Party findByMember(UUID playerId) {
+        UUID partyId = memberIndex.get(playerId);
+        return partyId != null ? loadParty(partyId) : null;
+    }
+
+    /**
+     * Stores an evicted party and makes it findable by its members
+     */
+    @Override
+    public synchronized void upsert(Party party) {
+        try {
+            put(party);
+            index(party.getId(), party.getMembers());
+            store.sync();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to store party " + party.getId() + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void delete(UUID partyId) {
+        try {
+            unindex(partyId);
+            store.delete(partyId);
+            store.sync();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to delete party " + partyId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The record stays (it is updated by the persister from now on), only the index entries go
+     */
+    @Override
+    public synchronized void markResident(UUID partyId) {
+        try {
+            unindex(partyId);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read party " + partyId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the party's record, keeping its member index entries current if it is evicted
+     */
+    private void put(Party party) throws IOException {
+        boolean indexed = unindex(party.getId());
+        store.put(party.getId(), BinaryPartyCodec.encode(party));
+        if (indexed) {
+            index(party.getId(), party.getMembers());
+        }
+    }
+
+    private void index(UUID partyId, Collection<UUID> members) {
+        evicted.add(partyId);
+        for (UUID memberId : members) {
+            memberIndex.put(memberId, partyId);
+        }
+    }
+
+    /**
+     * Removes the party's member index entries, returns whether it had any
+     */
+    private boolean unindex(UUID partyId) throws IOException {
+        if (!evicted.remove(partyId)) return false;
+        byte[] previous = store.get(partyId);
+        if (previous != null) {
+            for (UUID memberId : BinaryPartyCodec.decodeMembers(previous)) {
+                memberIndex.remove(memberId, partyId);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isJournaled() {
+        return true;
+    }
+
+    /**
+     * Writes the latest state of every changed party, one record each, and syncs once
+     */
+    @Override
+    public synchronized void write(List<JournalRecord> changes, Function<UUID, Party> residentParties) throws IOException {
+        if (changes.isEmpty()) return;
+
+        // Only the last state matters, so a party changed many times is written once
+        Map<UUID, Boolean> changed = new LinkedHashMap<>();  // Party UUID -> disbanded
+        for (JournalRecord change : changes) {
+            UUID partyId = UUID.fromString(change.party);
+            changed.put(partyId, change.op == JournalRecord.Op.DISBAND);
+        }
+
+        for (Map.Entry<UUID, Boolean> entry : changed.entrySet()) {
+            if (entry.getValue()) {
+                unindex(entry.getKey());
+                store.delete(entry.getKey());
+                continue;
+            }
+            // Not resident anymore: it was stored with its latest state when it was evicted
+            Party party = residentParties.apply(entry.getKey());
+            if (party != null) {
+                put(party);
+            }
+        }
+        store.sync();
+    }
+
+    private int partyCount() {
+        int reserved = (store.contains(ALLIANCES_KEY) ? 1 : 0) + (store.contains(IMPORTED_KEY) ? 1 : 0);
+        return store.size() - reserved;
+    }
+
+    @Override
+    public synchronized List<List<UUID>> getAlliances() {
+        return alliances;
+    }
+
+    @Override
+    public synchronized void writeAlliances(List<List<UUID>> alliances) throws IOException {
+        this.alliances = List.copyOf(alliances);
+        store.put(ALLIANCES_KEY, BinaryPartyCodec.encodeAlliances(alliances));
+        store.sync();
+    }
+
+    @Override
+    public synchronized boolean needsCompaction() {
+        long garbage = store.getGarbageBytes();
+        return garbage > compactThresholdBytes && garbage > store.getLiveBytes();
+    }
+
+    /**
+     * Stores every resident party and the alliances, and compacts the log if it has enough garbage
+     */
+    @Override
+    public synchronized boolean save(Collection<Party> residentParties) {
+        try {
+            for (Party party : residentParties) {
+                put(party);
+            }
+            store.put(ALLIANCES_KEY, BinaryPartyCodec.encodeAlliances(alliances));
+            store.sync();
+            if (needsCompaction()) {
+                store.compact();
+                logger.log(Level.INFO, "Compacted parties.kv: " + partyCount() + " parties");
+            }
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to save parties: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            store.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to close parties.kv: " + e.getMessage());
+        }
+    }
+}
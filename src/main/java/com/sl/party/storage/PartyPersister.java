@@ -0,0 +1,249 @@
+package com.sl.party.storage;
+
+import com.sl.party.model.Party;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind persistence for parties.
+ * World threads only queue change records; a background thread coalesces all changes made
+ * during one flush interval into a single write, so serialization and disk I/O never run on a tick.
+ *
+ * With a journaled storage the records are appended to the journal, and the journal is folded
+ * into a new snapshot once it grows past its threshold. Otherwise any change triggers a snapshot.
+ * The record queue is bounded: when it fills up callers are never blocked. The overflowing records
+ * are dropped and the next flush writes a full snapshot instead, which contains them anyway.
+ * Only dropped disbands are remembered, since a snapshot can't tell a disbanded party from an evicted one.
+ * Alliances are small and change rarely: only their latest state is kept and written with the next flush.
+ */
+public class PartyPersister {
+
+    private final PartyStorage storage;
+    private final Supplier<Collection<Party>> snapshot;
+    private final Function<UUID, Party> residentParties;
+    private final long flushIntervalMs;
+    private final Logger logger;
+
+    private final BlockingQueue<JournalRecord> recordQueue;
+    private final Queue<UUID> overflowDisbands = new ConcurrentLinkedQueue<>();
+    private final AtomicReference<List<List<UUID>>> pendingAlliances = new AtomicReference<>();
+    private final AtomicBoolean overflow = new AtomicBoolean(false);
+    private final AtomicBoolean earlyFlushRequested = new AtomicBoolean(false);
+    private final ScheduledExecutorService executor;
+
+    public PartyPersister(PartyStorage storage, Supplier<Collection<Party>> snapshot,
+                          Function<UUID, Party> residentParties,
+                          long flushIntervalMs, int queueCapacity, Logger logger) {
+        this.storage = storage;
+        this.snapshot = snapshot;
+        this.residentParties = residentParties;
+        this.flushIntervalMs = flushIntervalMs;
+        this.logger = logger;
+        this.recordQueue = new ArrayBlockingQueue<>(queueCapacity);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SLParty-Persister");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        executor.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a change. Never blocks.
+     */
+    public void record(JournalRecord record) {
+        if (!recordQueue.offer(record)) {
+            // Queue is full (mass join, etc.) - fall back to a full snapshot and do it now
+            if (record.op == JournalRecord.Op.DISBAND) {
+                overflowDisbands.add(UUID.fromString(record.party));
+            }
+            overflow.set(true);
+            requestEarlyFlush();
+        }
+    }
+
+    /**
+     * Queues the current alliances, replacing any that weren't written yet. Never blocks.
+     */
+    public void recordAlliances(List<List<UUID>> alliances) {
+        pendingAlliances.set(alliances);
+    }
+
+    private void requestEarlyFlush() {
+        if (earlyFlushRequested.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::flushSafely);
+            } catch (RuntimeException e) {
+                // Executor already shut down, the final flush picks the change up
+                earlyFlushRequested.set(false);
+            }
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Failed to flush parties: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes pending changes, if any. Runs on the persister thread.
+     */
+    private void flush() {
+        earlyFlushRequested.set(false);
+
+        List<JournalRecord> drained = new ArrayList<>();
+        recordQueue.drainTo(drained);
+        boolean full = overflow.getAndSet(false);
+        List<List<UUID>> alliances = pendingAlliances.getAndSet(null);
+
+        if (!storage.isJournaled()) {
+            // Only kept by the storage, the snapshot writes them
+            writeAlliances(alliances);
+            if (!drained.isEmpty() || full || alliances != null) {
+                storage.save(snapshot.get());
+            }
+            return;
+        }
+
+        if (!full) {
+            try {
+                storage.write(drained, residentParties);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to write party changes, writing snapshot: " + e.getMessage());
+                full = true;
+            }
+        }
+        if (!writeAlliances(alliances)) {
+            full = true;
+        }
+
+        if (full) {
+            // The drained changes are skipped in favour of the snapshot, except for disbands
+            rememberDisbands(drained);
+            deleteOverflowDisbands();
+        }
+        if (full || storage.needsCompaction()) {
+            // Fold everything into a new snapshot; the journal starts over
+            storage.save(snapshot.get());
+        }
+    }
+
+    /**
+     * Hands the alliances to the storage, if they changed. Returns false if they didn't reach the disk;
+     * the storage still keeps them for the next snapshot.
+     */
+    private boolean writeAlliances(List<List<UUID>> alliances) {
+        if (alliances == null) return true;
+        try {
+            storage.writeAlliances(alliances);
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to write alliances, writing snapshot: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void rememberDisbands(List<JournalRecord> records) {
+        for (JournalRecord record : records) {
+            if (record.op == JournalRecord.Op.DISBAND) {
+                overflowDisbands.add(UUID.fromString(record.party));
+            }
+        }
+    }
+
+    private void deleteOverflowDisbands() {
+        UUID partyId;
+        while ((partyId = overflowDisbands.poll()) != null) {
+            storage.delete(partyId);
+        }
+    }
+
+    /**
+     * Drains pending changes and writes one final snapshot, then stops the background thread.
+     * The drain runs on the persister thread after any flush that is already in progress;
+     * the caller waits at most {@code timeoutMs} for it.
+     */
+    public void shutdown(long timeoutMs) {
+        long startTime = System.nanoTime();
+        AtomicBoolean saved = new AtomicBoolean(false);
+        int pending = recordQueue.size();
+
+        try {
+            executor.execute(() -> saved.set(drain()));
+        } catch (RuntimeException e) {
+            // Already shut down
+        }
+        executor.shutdown();
+
+        boolean finished;
+        try {
+            finished = executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finished = false;
+        }
+
+        long elapsedMs = (System.nanoTime() - startTime) / 1_000_000;
+        if (!finished) {
+            executor.shutdownNow();
+            logger.log(Level.WARNING, "Party data drain did not finish within " + timeoutMs
+                + " ms, changes since the last flush may only be in the journal");
+        } else if (saved.get()) {
+            logger.log(Level.INFO, "Party data drained in " + elapsedMs + " ms (" + pending + " pending changes)");
+        } else {
+            logger.log(Level.WARNING, "Final party snapshot failed after " + elapsedMs + " ms, relying on the journal");
+        }
+    }
+
+    /**
+     * Final flush: append what is queued (so it is durable even if the snapshot fails),
+     * then fold everything into one snapshot so the next start has nothing to replay
+     */
+    private boolean drain() {
+        try {
+            List<JournalRecord> drained = new ArrayList<>();
+            recordQueue.drainTo(drained);
+            if (storage.isJournaled() && !overflow.get()) {
+                try {
+                    storage.write(drained, residentParties);
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Failed to write party changes during shutdown: " + e.getMessage());
+                    rememberDisbands(drained);
+                }
+            } else {
+                rememberDisbands(drained);
+            }
+            writeAlliances(pendingAlliances.getAndSet(null));
+            deleteOverflowDisbands();
+            return storage.save(snapshot.get());
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Failed to drain parties: " + e.getMessage());
+            return false;
+        } finally {
+            storage.close();
+        }
+    }
+}
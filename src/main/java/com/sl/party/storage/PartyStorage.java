@@ -1,134 +1,71 @@
 package com.sl.party.storage;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
 import com.sl.party.model.Party;
 
-import java.io.*;
-import java.lang.reflect.Type;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.*;
-import java.util.Map;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
 
 /**
- * Handles persistence of parties to JSON file
+ * Storage backend for parties.
+ *
+ * The cache reads every party with {@link #loadAll()} and keeps it resident, unless the backend is an
+ * {@link EvictingPartyStorage}, which can also hold evicted parties on disk.
+ * Changes of resident parties and alliances reach the backend through the {@link PartyPersister}.
+ *
+ * Implementations: {@link SnapshotPartyStorage} (binary snapshot + journal, all parties resident) and
+ * {@link KeyValuePartyStorage} (embedded single-file key-value store, supports eviction).
  */
-public class PartyStorage {
-
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
-    private final Path storageFile;
-    private final Logger logger;
-
-    public PartyStorage(Path dataFolder, Logger logger) {
-        this.storageFile = dataFolder.resolve("parties.json");
-        this.logger = logger;
-    }
+public interface PartyStorage {
 
     /**
-     * Save all parties to file
+     * Opens and recovers the storage and returns every party (for a cache that keeps all parties resident)
      */
-    public void save(Collection<Party> parties) {
-        try {
-            // Convert parties to serializable format
-            List<PartyData> partyDataList = new ArrayList<>();
-            for (Party party : parties) {
-                PartyData data = new PartyData();
-                data.id = party.getId().toString();
-                data.leaderId = party.getLeaderId().toString();
-                data.members = new ArrayList<>();
-                for (UUID member : party.getMembers()) {
-                    data.members.add(member.toString());
-                }
-                // Save member names
-                data.memberNames = new HashMap<>();
-                for (Map.Entry<UUID, String> entry : party.getMemberNames().entrySet()) {
-                    data.memberNames.put(entry.getKey().toString(), entry.getValue());
-                }
-                data.isPublic = party.isPublish();
-                partyDataList.add(data);
-            }
-
-            // Ensure parent directory exists
-            Files.createDirectories(storageFile.getParent());
-
-            // Write to file
-            try (Writer writer = new FileWriter(storageFile.toFile())) {
-                GSON.toJson(partyDataList, writer);
-            }
-
-            logger.log(Level.INFO, "Saved " + parties.size() + " parties to file");
-        } catch (IOException e) {
-            logger.log(Level.WARNING, "Failed to save parties: " + e.getMessage());
-        }
-    }
+    List<Party> loadAll();
 
     /**
-     * Load all parties from file
+     * Removes a party from the storage
      */
-    public List<Party> load() {
-        List<Party> parties = new ArrayList<>();
+    void delete(UUID partyId);
 
-        if (!Files.exists(storageFile)) {
-            logger.log(Level.INFO, "No parties file found, starting fresh");
-            return parties;
-        }
-
-        try (Reader reader = new FileReader(storageFile.toFile())) {
-            Type listType = new TypeToken<List<PartyData>>(){}.getType();
-            List<PartyData> partyDataList = GSON.fromJson(reader, listType);
-
-            if (partyDataList != null) {
-                for (PartyData data : partyDataList) {
-                    try {
-                        UUID id = UUID.fromString(data.id);
-                        UUID leaderId = UUID.fromString(data.leaderId);
-
-                        Party party = new Party(id, leaderId);
-                        party.setPublish(data.isPublic);
-
-                        // Add members (excluding leader who is already added)
-                        for (String memberStr : data.members) {
-                            UUID memberId = UUID.fromString(memberStr);
-                            if (!memberId.equals(leaderId)) {
-                                party.addMember(memberId);
-                            }
-                        }
+    /**
+     * Whether individual changes are written with {@link #write}; otherwise every change needs a full {@link #save}
+     */
+    boolean isJournaled();
 
-                        // Load member names
-                        if (data.memberNames != null) {
-                            for (Map.Entry<String, String> entry : data.memberNames.entrySet()) {
-                                UUID memberId = UUID.fromString(entry.getKey());
-                                party.setMemberName(memberId, entry.getValue());
-                            }
-                        }
+    /**
+     * Writes a batch of changes of resident parties
+     *
+     * @param changes the changes in the order they were made
+     * @param residentParties resolves the current state of a resident party by id (null if it isn't resident)
+     */
+    void write(List<JournalRecord> changes, Function<UUID, Party> residentParties) throws IOException;
 
-                        parties.add(party);
-                    } catch (Exception e) {
-                        logger.log(Level.WARNING, "Failed to load party: " + e.getMessage());
-                    }
-                }
-            }
+    /**
+     * Alliances read when the storage was opened, each one as the ids of its parties
+     */
+    List<List<UUID>> getAlliances();
 
-            logger.log(Level.INFO, "Loaded " + parties.size() + " parties from file");
-        } catch (IOException e) {
-            logger.log(Level.WARNING, "Failed to load parties: " + e.getMessage());
-        }
+    /**
+     * Stores the current alliances in place of the stored ones and forces them to disk.
+     * A backend that isn't journaled only keeps them for the next {@link #save}.
+     */
+    void writeAlliances(List<List<UUID>> alliances) throws IOException;
 
-        return parties;
-    }
+    /**
+     * Whether written changes should be folded with {@link #save}
+     */
+    boolean needsCompaction();
 
     /**
-     * Internal data class for JSON serialization
+     * Writes the complete state: the given resident parties plus every party held by the storage,
+     * and the alliances
+     *
+     * @return whether the state reached the disk
      */
-    private static class PartyData {
-        String id;
-        String leaderId;
-        List<String> members;
-        Map<String, String> memberNames;  // UUID -> username mapping
-        boolean isPublic;
-    }
+    boolean save(Collection<Party> residentParties);
+
+    void close();
 }
@@ -0,0 +1,537 @@
+package com.sl.party.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sl.party.model.Party;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * File backend: persists parties to a binary snapshot file (see {@link BinaryPartyCodec}).
+ * A parties.json written by older versions is migrated to the binary format on first load.
+ *
+ * In journaled mode every change is appended to parties.journal as a small record, and the
+ * full snapshot in parties.bin is only rewritten when the journal is compacted. The journal
+ * header carries the generation of the snapshot it applies to, so a journal left over from
+ * before a compaction is never replayed on top of the newer snapshot.
+ *
+ * Snapshots are crash-safe: they are written to a temp file, forced to disk and atomically
+ * renamed over parties.bin. The previous generation is kept as parties.bin.1 together with its
+ * journal (parties.journal.1), so a damaged snapshot falls back to the previous one plus both journals.
+ *
+ * Alliances are a section of the snapshot; a change of them is journaled as one record holding every alliance.
+ *
+ * Every snapshot is a complete file, so this backend can't hold evicted parties without keeping
+ * them in memory; the cache keeps every party resident with it (it isn't an {@link EvictingPartyStorage}).
+ */
+public class SnapshotPartyStorage implements PartyStorage {
+
+    private static final Gson JOURNAL_GSON = new Gson();
+    private final Path storageFile;
+    private final Path previousStorageFile;
+    private final Path tempStorageFile;
+    private final Path legacyJsonFile;
+    private final Path journalFile;
+    private final Path previousJournalFile;
+    private final Logger logger;
+    private final boolean journaled;
+    private final long compactThresholdBytes;
+    private final boolean parallelLoad;
+
+    private long generation;
+    private List<List<UUID>> alliances = List.of();
+    private FileChannel journalChannel;
+    private Writer journalWriter;
+    private long journalBytes;
+
+    public SnapshotPartyStorage(Path dataFolder, Logger logger) {
+        this(dataFolder, logger, false, Long.MAX_VALUE, false);
+    }
+
+    public SnapshotPartyStorage(Path dataFolder, Logger logger, boolean journaled, long compactThresholdBytes, boolean parallelLoad) {
+        this.storageFile = dataFolder.resolve("parties.bin");
+        this.previousStorageFile = dataFolder.resolve("parties.bin.1");
+        this.tempStorageFile = dataFolder.resolve("parties.bin.tmp");
+        this.legacyJsonFile = dataFolder.resolve("parties.json");
+        this.journalFile = dataFolder.resolve("parties.journal");
+        this.previousJournalFile = dataFolder.resolve("parties.journal.1");
+        this.logger = logger;
+        this.journaled = journaled;
+        this.compactThresholdBytes = compactThresholdBytes;
+        this.parallelLoad = parallelLoad;
+    }
+
+    @Override
+    public boolean isJournaled() {
+        return journaled;
+    }
+
+    /**
+     * Save all parties to file (serialized, callers may be on different world threads).
+     * Starts a new snapshot generation, which also compacts the journal.
+     *
+     * @return whether the snapshot reached the disk
+     */
+    @Override
+    public synchronized boolean save(Collection<Party> residentParties) {
+        try {
+            Collection<Party> parties = residentParties;
+            long nextGeneration = generation + 1;
+
+            // Ensure parent directory exists
+            Files.createDirectories(storageFile.getParent());
+
+            // Write the new generation next to the current one and make sure it is on disk
+            try (FileChannel channel = FileChannel.open(tempStorageFile,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                BinaryPartyCodec.write(channel, nextGeneration, parties, alliances);
+                channel.force(true);
+            }
+
+            // Keep the current generation as the fallback, then swap the new one in
+            if (Files.exists(storageFile)) {
+                move(storageFile, previousStorageFile);
+            }
+            move(tempStorageFile, storageFile);
+            syncDirectory();
+            generation = nextGeneration;
+
+            // Changes up to now are in the snapshot, start an empty journal for the new generation
+            if (journaled || Files.exists(journalFile)) {
+                rotateJournal();
+            }
+
+            logger.log(Level.INFO, "Saved " + parties.size() + " parties to file");
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to save parties: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Nothing to do: a disbanded party is simply missing from the next snapshot
+     */
+    @Override
+    public void delete(UUID partyId) {
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Flush the renames to disk. Not supported on every platform (e.g. Windows), which is fine.
+     */
+    private void syncDirectory() {
+        try (FileChannel directory = FileChannel.open(storageFile.getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // Directory sync is best effort
+        }
+    }
+
+    /**
+     * Append changes to the journal (journaled mode only). The parties themselves are
+     * written with the next snapshot.
+     */
+    @Override
+    public synchronized void write(List<JournalRecord> records, Function<UUID, Party> residentParties) throws IOException {
+        if (records.isEmpty()) return;
+        if (journalWriter == null) {
+            rotateJournal();
+        }
+
+        StringBuilder lines = new StringBuilder();
+        for (JournalRecord record : records) {
+            lines.append(JOURNAL_GSON.toJson(record)).append('\n');
+        }
+        journalWriter.write(lines.toString());
+        journalWriter.flush();
+        journalChannel.force(false);
+        journalBytes = journalChannel.size();  // Bytes on disk, names may take several bytes per char
+    }
+
+    @Override
+    public synchronized List<List<UUID>> getAlliances() {
+        return alliances;
+    }
+
+    /**
+     * Keeps the alliances for the next snapshot and, in journaled mode, appends them to the journal
+     */
+    @Override
+    public synchronized void writeAlliances(List<List<UUID>> alliances) throws IOException {
+        this.alliances = List.copyOf(alliances);
+        if (journaled) {
+            write(List.of(JournalRecord.alliances(alliances)), partyId -> null);
+        }
+    }
+
+    /**
+     * Whether the journal has grown enough to be folded into a new snapshot
+     */
+    @Override
+    public synchronized boolean needsCompaction() {
+        return journalBytes > compactThresholdBytes;
+    }
+
+    /**
+     * Keeps the current journal as the previous generation's journal and starts a new one
+     */
+    private void rotateJournal() throws IOException {
+        closeJournal();
+        Files.createDirectories(journalFile.getParent());
+        if (Files.exists(journalFile)) {
+            move(journalFile, previousJournalFile);
+        }
+
+        openJournal(StandardOpenOption.TRUNCATE_EXISTING);
+        String header = JOURNAL_GSON.toJson(JournalRecord.header(generation)) + '\n';
+        journalWriter.write(header);
+        journalWriter.flush();
+        journalChannel.force(false);
+        journalBytes = journalChannel.size();
+    }
+
+    private void openJournal(StandardOpenOption mode) throws IOException {
+        closeJournal();
+        journalChannel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode);
+        journalWriter = Channels.newWriter(journalChannel, StandardCharsets.UTF_8);
+        journalBytes = journalChannel.size();
+    }
+
+    /**
+     * Close the journal file
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            closeJournal();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to close party journal: " + e.getMessage());
+        }
+    }
+
+    private void closeJournal() throws IOException {
+        if (journalWriter != null) {
+            journalWriter.close();
+            journalWriter = null;
+            journalChannel = null;
+        }
+    }
+
+    /**
+     * Load all parties from file, then replay the journals written since that snapshot.
+     * Falls back to the previous generation if the current snapshot is missing or damaged.
+     */
+    @Override
+    public synchronized List<Party> loadAll() {
+        long startTime = System.nanoTime();
+        Map<UUID, Party> parties = new LinkedHashMap<>();
+        LoadState state = read(parties, true);
+
+        try {
+            if (state.rewrite) {
+                // Start over from a clean, complete snapshot and an empty journal
+                save(parties.values());
+                if (state.migrate && Files.exists(storageFile)) {
+                    Files.move(legacyJsonFile, legacyJsonFile.resolveSibling("parties.json.migrated"),
+                        StandardCopyOption.REPLACE_EXISTING);
+                    logger.log(Level.INFO, "Migrated " + parties.size() + " parties from parties.json to parties.bin");
+                }
+            } else if (state.currentJournal) {
+                openJournal(StandardOpenOption.APPEND);
+            } else if (journaled) {
+                rotateJournal();
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to prepare party storage after load: " + e.getMessage());
+        }
+
+        long elapsedMs = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+        logger.log(Level.INFO, String.format("Party storage ready: %d parties in %d ms (%d parties/s)",
+            parties.size(), elapsedMs, parties.size() * 1000L / elapsedMs));
+
+        return new ArrayList<>(parties.values());
+    }
+
+    /**
+     * Reads the stored parties and alliances like {@link #loadAll()}, but leaves every file as it is
+     * (no migration, rotation or quarantine). Used to import them into another backend.
+     *
+     * @throws IOException if there is stored data but none of it could be read
+     */
+    synchronized List<Party> readAll() throws IOException {
+        Map<UUID, Party> parties = new LinkedHashMap<>();
+        if (read(parties, false).unreadable) {
+            throw new IOException("No readable parties.bin or parties.json");
+        }
+        return new ArrayList<>(parties.values());
+    }
+
+    /**
+     * What {@link #read} found, and what {@link #loadAll()} has to write because of it
+     */
+    private static class LoadState {
+        boolean rewrite;         // Write a clean snapshot and start an empty journal
+        boolean migrate;         // Read from parties.json
+        boolean currentJournal;  // parties.journal belongs to the loaded generation and can be appended to
+        boolean unreadable;      // Stored data exists but none of it could be read
+    }
+
+    /**
+     * Reads the newest readable snapshot (or parties.json) and replays the journals on top of it
+     *
+     * @param repair whether damaged snapshots may be moved aside
+     */
+    private LoadState read(Map<UUID, Party> parties, boolean repair) {
+        LoadState state = new LoadState();
+
+        if (Files.exists(storageFile) && loadSnapshot(storageFile, parties)) {
+            // Current generation is good
+        } else if (Files.exists(previousStorageFile) && loadSnapshot(previousStorageFile, parties)) {
+            logger.log(Level.WARNING, "Recovered parties from previous snapshot generation " + generation);
+            if (repair) {
+                quarantine(storageFile);
+            }
+            state.rewrite = true;
+        } else if (Files.exists(legacyJsonFile)) {
+            state.unreadable = !loadLegacyJson(parties);
+            state.rewrite = true;
+            state.migrate = true;
+        } else if (Files.exists(storageFile) || Files.exists(previousStorageFile)) {
+            state.unreadable = true;
+            if (repair) {
+                // Keep the damaged generations for manual recovery, the next save would overwrite them
+                logger.log(Level.SEVERE, "No readable party snapshot, starting without the stored parties."
+                    + " The damaged files were moved aside as .corrupt");
+                quarantine(storageFile);
+                quarantine(previousStorageFile);
+            }
+        } else {
+            logger.log(Level.INFO, "No parties file found, starting fresh");
+        }
+
+        // Replay in generation order; journals older than the snapshot are already contained in it
+        long snapshotGeneration = generation;
+        for (Path file : List.of(previousJournalFile, journalFile)) {
+            if (!Files.exists(file)) continue;
+            JournalReplay replay = replayJournal(file, parties, snapshotGeneration);
+            if (replay.generation > snapshotGeneration) {
+                // Recovered from an older snapshot, the newer journals still apply on top of it
+                state.rewrite = true;
+            }
+            generation = Math.max(generation, replay.generation);
+            if (file.equals(journalFile)) {
+                state.currentJournal = replay.replayed && !replay.torn && replay.generation == generation;
+            }
+            state.rewrite |= replay.torn;
+        }
+        return state;
+    }
+
+    /**
+     * Moves a damaged snapshot aside so the next save doesn't rotate it over the good fallback
+     */
+    private void quarantine(Path file) {
+        if (!Files.exists(file)) return;
+        try {
+            Files.move(file, file.resolveSibling(file.getFileName() + ".corrupt"), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to move damaged " + file.getFileName() + " aside: " + e.getMessage());
+        }
+    }
+
+    private boolean loadSnapshot(Path file, Map<UUID, Party> parties) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            BinaryPartyCodec.Snapshot snapshot = BinaryPartyCodec.read(channel, parallelLoad);
+            generation = snapshot.generation();
+            alliances = snapshot.alliances();
+            for (Party party : snapshot.parties()) {
+                parties.put(party.getId(), party);
+            }
+            logger.log(Level.INFO, "Loaded " + parties.size() + " parties from file");
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to load parties from " + file.getFileName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Streams parties.json (an array of parties) with a JsonReader and builds parties as they are read
+     *
+     * @return whether the file could be read
+     */
+    private boolean loadLegacyJson(Map<UUID, Party> parties) {
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(legacyJsonFile, StandardCharsets.UTF_8))) {
+            generation = 0;
+            readJsonParties(reader, parties);
+
+            logger.log(Level.INFO, "Loaded " + parties.size() + " parties from file");
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            logger.log(Level.WARNING, "Failed to load parties: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void readJsonParties(JsonReader reader, Map<UUID, Party> parties) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String id = null;
+            String leaderId = null;
+            List<String> members = new ArrayList<>();
+            Map<String, String> memberNames = new HashMap<>();  // UUID -> username mapping
+            boolean isPublic = false;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "id" -> id = reader.nextString();
+                    case "leaderId" -> leaderId = reader.nextString();
+                    case "members" -> {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            members.add(reader.nextString());
+                        }
+                        reader.endArray();
+                    }
+                    case "memberNames" -> {
+                        if (reader.peek() == JsonToken.NULL) {
+                            reader.nextNull();
+                            break;
+                        }
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            memberNames.put(reader.nextName(), reader.nextString());
+                        }
+                        reader.endObject();
+                    }
+                    case "isPublic" -> isPublic = reader.nextBoolean();
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            try {
+                UUID partyId = UUID.fromString(id);
+                UUID leader = UUID.fromString(leaderId);
+
+                Party party = new Party(partyId, leader);
+                party.setPublish(isPublic);
+
+                // Add members (leader is already added)
+                for (String memberStr : members) {
+                    UUID memberId = UUID.fromString(memberStr);
+                    party.addMember(memberId, memberNames.get(memberStr));
+                }
+                party.setMemberName(leader, memberNames.get(leaderId));
+
+                parties.put(partyId, party);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Failed to load party: " + e.getMessage());
+            }
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Result of reading one journal file
+     */
+    private static class JournalReplay {
+        long generation = -1;
+        boolean replayed;  // Header matched and records were applied
+        boolean torn;      // Ended in a partial or unreadable record
+    }
+
+    private JournalReplay replayJournal(Path file, Map<UUID, Party> parties, long snapshotGeneration) {
+        JournalReplay result = new JournalReplay();
+        int records = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            JournalRecord header = line != null ? parseRecord(line) : null;
+            if (header == null || header.op != JournalRecord.Op.HEADER || header.generation == null) {
+                return result;
+            }
+            result.generation = header.generation;
+            if (header.generation < snapshotGeneration) {
+                // Written before the snapshot, its changes are already in parties.bin
+                return result;
+            }
+
+            result.replayed = true;
+            while ((line = reader.readLine()) != null) {
+                JournalRecord record = parseRecord(line);
+                if (record == null) {
+                    // Torn write at the end of the journal, nothing after it can be trusted
+                    logger.log(Level.WARNING, file.getFileName() + " is corrupt after " + records + " records, ignoring the rest");
+                    result.torn = true;
+                    break;
+                }
+                try {
+                    if (record.op == JournalRecord.Op.ALLIANCES) {
+                        alliances = record.allianceGroups();
+                    } else {
+                        record.apply(parties);
+                    }
+                    records++;
+                } catch (IllegalArgumentException | NullPointerException e) {
+                    logger.log(Level.WARNING, "Skipping invalid journal record: " + e.getMessage());
+                }
+            }
+            result.torn |= !endsWithNewline(file);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read " + file.getFileName() + ": " + e.getMessage());
+            result.torn = true;
+        }
+
+        if (records > 0) {
+            logger.log(Level.INFO, "Replayed " + records + " records from " + file.getFileName());
+        }
+        return result;
+    }
+
+    /**
+     * A journal that doesn't end in a newline was cut mid-record and must not be appended to
+     */
+    private static boolean endsWithNewline(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() == 0) return false;
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            return last.get(0) == '\n';
+        }
+    }
+
+    private JournalRecord parseRecord(String line) {
+        try {
+            JournalRecord record = JOURNAL_GSON.fromJson(line, JournalRecord.class);
+            return record != null && record.op != null ? record : null;
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.sl.party.storage.kv;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * Embedded single-file key-value store with UUID keys (log-structured, in the style of Bitcask).
+ *
+ * Every put or delete is appended to the file as one checksummed record and an in-memory key
+ * directory maps each live key to the position of its latest value, so a read is one positional
+ * read and a write is one append. Overwritten values stay in the file as garbage until
+ * {@link #compact()} rewrites the live records into a new file and atomically swaps it in.
+ *
+ * Layout, big-endian:
+ * <pre>
+ * int    magic "SLKV"
+ * short  version
+ * then per record:
+ *        int    CRC32C of the rest of the record
+ *        byte   type (1 = put, 2 = delete)
+ *        long*2 key
+ *        int    value length, then the value bytes (0 for delete)
+ * </pre>
+ * A record that is cut off or fails its checksum ends the log; it is truncated away on open.
+ * Not thread-safe, callers synchronize.
+ */
+public class KeyValueStore {
+
+    private static final int MAGIC = 0x534C4B56;  // "SLKV"
+    private static final short VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 6;
+    private static final int RECORD_HEADER_SIZE = 4 + 1 + 16 + 4;
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_DELETE = 2;
+
+    private final Path file;
+    private final Path tempFile;
+    private final Map<UUID, Location> keyDirectory = new HashMap<>();
+    private FileChannel channel;
+    private long end;
+    private long liveBytes;
+    private long garbageBytes;
+
+    /**
+     * Position of a value in the file
+     */
+    private record Location(long offset, int length) {
+        long recordSize() {
+            return RECORD_HEADER_SIZE + length;
+        }
+    }
+
+    public KeyValueStore(Path file) {
+        this.file = file;
+        this.tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+    }
+
+    /**
+     * Opens the file (creating it if needed) and rebuilds the key directory
+     *
+     * @return bytes of a torn or damaged tail that were cut off, 0 if the log was intact
+     */
+    public long open() throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.deleteIfExists(tempFile);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putShort(VERSION).flip();
+            writeFully(header, 0);
+            channel.force(true);
+            end = FILE_HEADER_SIZE;
+            return 0;
+        }
+
+        long size = channel.size();
+        end = scan();
+        if (end < size) {
+            channel.truncate(end);
+            channel.force(true);
+        }
+        return size - end;
+    }
+
+    /**
+     * Reads the log sequentially and returns where the last intact record ends
+     */
+    private long scan() throws IOException {
+        // The stream doesn't own the channel, keep it open
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+            Channels.newInputStream(channel.position(0)), 64 * 1024));
+        if (in.readInt() != MAGIC) {
+            throw new IOException(file.getFileName() + " is not a key-value store");
+        }
+        short version = in.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported key-value store version " + version);
+        }
+
+        long position = FILE_HEADER_SIZE;
+        CRC32C crc = new CRC32C();
+        byte[] recordHeader = new byte[RECORD_HEADER_SIZE - 4];
+        while (true) {
+            byte[] value;
+            int checksum;
+            try {
+                checksum = in.readInt();
+                in.readFully(recordHeader);
+                int length = ByteBuffer.wrap(recordHeader, 17, 4).getInt();
+                if (length < 0 || position + RECORD_HEADER_SIZE + length > channel.size()) {
+                    return position;
+                }
+                value = new byte[length];
+                in.readFully(value);
+            } catch (EOFException e) {
+                return position;
+            }
+
+            crc.reset();
+            crc.update(recordHeader);
+            crc.update(value);
+            if ((int) crc.getValue() != checksum) {
+                return position;
+            }
+
+            ByteBuffer header = ByteBuffer.wrap(recordHeader);
+            byte type = header.get();
+            UUID key = new UUID(header.getLong(), header.getLong());
+            if (type == TYPE_PUT) {
+                replace(key, new Location(position + RECORD_HEADER_SIZE, value.length));
+            } else if (type == TYPE_DELETE) {
+                replace(key, null);
+                garbageBytes += RECORD_HEADER_SIZE;
+            } else {
+                return position;
+            }
+            position += RECORD_HEADER_SIZE + value.length;
+        }
+    }
+
+    private void replace(UUID key, Location location) {
+        Location previous = location != null ? keyDirectory.put(key, location) : keyDirectory.remove(key);
+        if (previous != null) {
+            liveBytes -= previous.recordSize();
+            garbageBytes += previous.recordSize();
+        }
+        if (location != null) {
+            liveBytes += location.recordSize();
+        }
+    }
+
+    public byte[] get(UUID key) throws IOException {
+        Location location = keyDirectory.get(key);
+        if (location == null) return null;
+
+        ByteBuffer value = ByteBuffer.allocate(location.length());
+        while (value.hasRemaining()) {
+            if (channel.read(value, location.offset() + value.position()) < 0) {
+                throw new IOException("Unexpected end of " + file.getFileName());
+            }
+        }
+        return value.array();
+    }
+
+    public boolean contains(UUID key) {
+        return keyDirectory.containsKey(key);
+    }
+
+    public Set<UUID> keys() {
+        return Set.copyOf(keyDirectory.keySet());
+    }
+
+    public int size() {
+        return keyDirectory.size();
+    }
+
+    /**
+     * Appends a value. Not durable until {@link #sync()}.
+     */
+    public void put(UUID key, byte[] value) throws IOException {
+        long offset = append(TYPE_PUT, key, value);
+        replace(key, new Location(offset + RECORD_HEADER_SIZE, value.length));
+    }
+
+    /**
+     * Appends a tombstone if the key exists. Not durable until {@link #sync()}.
+     */
+    public void delete(UUID key) throws IOException {
+        if (!keyDirectory.containsKey(key)) return;
+        append(TYPE_DELETE, key, new byte[0]);
+        replace(key, null);
+        garbageBytes += RECORD_HEADER_SIZE;
+    }
+
+    private long append(byte type, UUID key, byte[] value) throws IOException {
+        ByteBuffer record = encodeRecord(type, key, value);
+        long offset = end;
+        writeFully(record, offset);
+        end += record.capacity();
+        return offset;
+    }
+
+    private static ByteBuffer encodeRecord(byte type, UUID key, byte[] value) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + value.length);
+        record.putInt(0).put(type)
+            .putLong(key.getMostSignificantBits()).putLong(key.getLeastSignificantBits())
+            .putInt(value.length).put(value);
+
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), 4, record.capacity() - 4);
+        record.putInt(0, (int) crc.getValue());
+        return record.flip();
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Forces appended records to disk
+     */
+    public void sync() throws IOException {
+        channel.force(false);
+    }
+
+    public long getLiveBytes() {
+        return liveBytes;
+    }
+
+    public long getGarbageBytes() {
+        return garbageBytes;
+    }
+
+    /**
+     * Rewrites the live records into a new file and atomically replaces the log with it
+     */
+    public void compact() throws IOException {
+        Map<UUID, Location> compacted = new HashMap<>(keyDirectory.size() * 2);
+        long position = FILE_HEADER_SIZE;
+
+        try (FileChannel target = FileChannel.open(tempFile,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putShort(VERSION).flip();
+            while (header.hasRemaining()) {
+                target.write(header);
+            }
+            for (Map.Entry<UUID, Location> entry : keyDirectory.entrySet()) {
+                ByteBuffer record = encodeRecord(TYPE_PUT, entry.getKey(), get(entry.getKey()));
+                while (record.hasRemaining()) {
+                    target.write(record);
+                }
+                compacted.put(entry.getKey(), new Location(position + RECORD_HEADER_SIZE, entry.getValue().length()));
+                position += entry.getValue().recordSize();
+            }
+            target.force(true);
+        }
+
+        channel.close();
+        try {
+            Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            // Reopen whichever file is in place now
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        keyDirectory.clear();
+        keyDirectory.putAll(compacted);
+        end = position;
+        liveBytes = position - FILE_HEADER_SIZE;
+        garbageBytes = 0;
+    }
+
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -6,10 +6,9 @@ import com.hypixel.hytale.server.core.modules.entity.AllLegacyLivingEntityTypesQ
 import com.hypixel.hytale.server.core.modules.entity.damage.Damage;
 import com.hypixel.hytale.server.core.modules.entity.damage.DamageEventSystem;
 import com.hypixel.hytale.server.core.modules.entity.damage.DamageModule;
-import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
-import com.sl.party.cache.PartyCache;
-import com.sl.party.model.Party;
+import com.sl.party.alliance.AllianceManager;
+import com.sl.party.component.PartyMembershipComponent;
 import org.checkerframework.checker.nullness.compatqual.NonNullDecl;
 import org.checkerframework.checker.nullness.compatqual.NullableDecl;
 
@@ -17,17 +16,21 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 /**
- * Prevents party members from damaging each other
+ * Prevents party members (and members of allied parties) from damaging each other.
+ * Compares the party handles on both entities (see {@link PartyMembershipComponent}),
+ * so a damage event costs two component reads and no party lookups.
+ * Decisions are memoized per tick and attacker/victim pair (see {@link FriendlyFireMemo}),
+ * so AoE bursts only decide each pair once.
  */
 public class DamageSystemListener extends DamageEventSystem {
 
-    private final PartyCache partyCache;
+    private final AllianceManager alliances;
 
     @Nonnull
     private static final Query<EntityStore> QUERY;
 
-    public DamageSystemListener(PartyCache partyCache) {
-        this.partyCache = partyCache;
+    public DamageSystemListener(AllianceManager alliances) {
+        this.alliances = alliances;
     }
 
     @Nullable
@@ -42,22 +45,33 @@ public class DamageSystemListener extends DamageEventSystem {
         final Ref<EntityStore> attackerRef = entitySource.getRef();
         if (!attackerRef.isValid()) return;
 
-        final PlayerRef victim = archetypeChunk.getComponent(i, PlayerRef.getComponentType());
-        final PlayerRef attacker = commandBuffer.getComponent(attackerRef, PlayerRef.getComponentType());
-        if (victim == null || attacker == null) return;
+        final Ref<EntityStore> victimRef = archetypeChunk.getReferenceTo(i);
+        final FriendlyFireMemo memo = FriendlyFireMemo.current();
+        final long key = FriendlyFireMemo.key(attackerRef.getIndex(), victimRef.getIndex());
 
-        final Party attackerParty = partyCache.getParty(attacker.getUuid());
-        if (attackerParty == null) return;
-
-        final Party victimParty = partyCache.getParty(victim.getUuid());
-        if (victimParty == null) return;
-
-        if (!attackerParty.getId().equals(victimParty.getId())) return;
+        int decision = memo.get(key);
+        if (decision == FriendlyFireMemo.UNKNOWN) {
+            decision = decide(i, archetypeChunk, commandBuffer, attackerRef);
+            memo.put(key, decision);
+        }
+        if (decision != FriendlyFireMemo.CANCELLED) return;
 
         // Cancel damage between party members
         damage.setCancelled(true);
     }
 
+    private int decide(int i, ArchetypeChunk<EntityStore> archetypeChunk, CommandBuffer<EntityStore> commandBuffer, Ref<EntityStore> attackerRef) {
+        final PartyMembershipComponent victim = archetypeChunk.getComponent(i, PartyMembershipComponent.getComponentType());
+        if (victim == null || victim.getPartyHandle() == PartyMembershipComponent.NO_PARTY) return FriendlyFireMemo.ALLOWED;
+
+        final PartyMembershipComponent attacker = commandBuffer.getComponent(attackerRef, PartyMembershipComponent.getComponentType());
+        if (attacker == null) return FriendlyFireMemo.ALLOWED;
+        if (victim.isSameParty(attacker) || alliances.isAllied(victim.getAllianceIndex(), attacker.getAllianceIndex())) {
+            return FriendlyFireMemo.CANCELLED;
+        }
+        return FriendlyFireMemo.ALLOWED;
+    }
+
     @NullableDecl
     @Override
     public Query<EntityStore> getQuery() {
@@ -0,0 +1,115 @@
+package com.sl.party.system;
+
+import java.util.Arrays;
+
+/**
+ * Per-tick memo of friendly-fire decisions, keyed by (attacker entity index, victim entity index).
+ * An explosion or sweep produces many damage events with the same attacker in one tick; each pair
+ * is decided once and answered from here afterwards.
+ *
+ * One memo per world thread (worlds tick on their own thread), so no locking. Open addressing over
+ * primitive arrays: no boxed keys and no allocation once the table has grown to the tick's working set.
+ * {@link #nextTick()} clears it in O(1) by bumping a generation stamp instead of wiping the arrays.
+ */
+final class FriendlyFireMemo {
+
+    static final int UNKNOWN = -1;
+    static final int ALLOWED = 0;
+    static final int CANCELLED = 1;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private static final ThreadLocal<FriendlyFireMemo> CURRENT = ThreadLocal.withInitial(FriendlyFireMemo::new);
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[] stamps = new int[INITIAL_CAPACITY];  // Slot is used in this tick if stamp == generation
+    private byte[] decisions = new byte[INITIAL_CAPACITY];
+    private int generation = 1;
+    private int size;
+
+    private FriendlyFireMemo() {
+    }
+
+    /**
+     * Memo of the calling world thread
+     */
+    static FriendlyFireMemo current() {
+        return CURRENT.get();
+    }
+
+    static long key(int attackerIndex, int victimIndex) {
+        return ((long) attackerIndex << 32) | (victimIndex & 0xFFFFFFFFL);
+    }
+
+    int get(long key) {
+        int mask = keys.length - 1;
+        for (int slot = mix(key) & mask; stamps[slot] == generation; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return decisions[slot];
+            }
+        }
+        return UNKNOWN;
+    }
+
+    void put(long key, int decision) {
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        insert(key, (byte) decision);
+    }
+
+    private void insert(long key, byte decision) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (stamps[slot] == generation) {
+            if (keys[slot] == key) {
+                decisions[slot] = decision;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        stamps[slot] = generation;
+        decisions[slot] = decision;
+        size++;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldStamps = stamps;
+        byte[] oldDecisions = decisions;
+        int oldGeneration = generation;
+
+        keys = new long[oldKeys.length * 2];
+        stamps = new int[oldKeys.length * 2];
+        decisions = new byte[oldKeys.length * 2];
+        generation = 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldStamps[i] == oldGeneration) {
+                insert(oldKeys[i], oldDecisions[i]);
+            }
+        }
+    }
+
+    /**
+     * Forgets every decision (end of tick)
+     */
+    void nextTick() {
+        if (size == 0) return;
+        size = 0;
+        generation++;
+        if (generation == 0) {
+            // Wrapped around, stale stamps could match again
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }
+
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
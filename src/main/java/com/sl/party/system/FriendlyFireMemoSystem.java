@@ -0,0 +1,17 @@
+package com.sl.party.system;
+
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.component.system.tick.TickingSystem;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+
+/**
+ * Clears the friendly-fire memo of the ticking world once per tick, so cached decisions
+ * never outlive the tick they were made in (membership may change between ticks)
+ */
+public class FriendlyFireMemoSystem extends TickingSystem<EntityStore> {
+
+    @Override
+    public void tick(float dt, int systemIndex, Store<EntityStore> store) {
+        FriendlyFireMemo.current().nextTick();
+    }
+}
@@ -0,0 +1,114 @@
+package com.sl.party.alliance;
+
+import com.sl.party.model.Party;
+import com.sl.party.storage.KeyValuePartyStorage;
+import com.sl.party.storage.PartyPersister;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AllianceManagerTest {
+
+    private static final Logger LOGGER = Logger.getLogger("SLPartyTest");
+
+    @TempDir
+    Path dataFolder;
+
+    private final UUID partyA = UUID.randomUUID();
+    private final UUID partyB = UUID.randomUUID();
+    private final UUID partyC = UUID.randomUUID();
+    private final UUID partyD = UUID.randomUUID();
+
+    private static void ally(AllianceManager alliances, UUID first, UUID second) {
+        assertEquals(AllianceManager.RequestResult.REQUESTED, alliances.requestAlliance(first, second));
+        assertEquals(AllianceManager.RequestResult.FORMED, alliances.requestAlliance(second, first));
+    }
+
+    private boolean allied(AllianceManager alliances, UUID first, UUID second) {
+        return alliances.isAllied(alliances.indexOf(first), alliances.indexOf(second));
+    }
+
+    @Test
+    void formsAllianceOnlyWhenBothAsk() {
+        AllianceManager alliances = new AllianceManager(null, LOGGER);
+        assertEquals(AllianceManager.RequestResult.REQUESTED, alliances.requestAlliance(partyA, partyB));
+        assertFalse(allied(alliances, partyA, partyB));
+
+        assertEquals(AllianceManager.RequestResult.FORMED, alliances.requestAlliance(partyB, partyA));
+        assertTrue(allied(alliances, partyA, partyB));
+        assertEquals(AllianceManager.RequestResult.ALREADY_ALLIED, alliances.requestAlliance(partyA, partyB));
+    }
+
+    @Test
+    void freedIndexesAreReusedOnlyAfterTheRefresh() {
+        AllianceManager alliances = new AllianceManager(null, LOGGER);
+        Map<UUID, Runnable> refreshes = new HashMap<>();
+        alliances.setIndexListener(refreshes::put);
+        ally(alliances, partyA, partyB);
+        Set<Integer> used = Set.of(alliances.indexOf(partyA), alliances.indexOf(partyB));
+
+        // B is left alone, so both give their index back and are told about it
+        refreshes.clear();
+        assertTrue(alliances.leave(partyA));
+        assertEquals(AllianceManager.NO_ALLIANCE, alliances.indexOf(partyA));
+        assertEquals(AllianceManager.NO_ALLIANCE, alliances.indexOf(partyB));
+        assertEquals(Set.of(partyA, partyB), refreshes.keySet());
+        assertFalse(alliances.leave(partyB));
+
+        // Their members may still carry the old indexes, so a new alliance can't have them yet
+        List<Runnable> pending = new ArrayList<>(refreshes.values());
+        ally(alliances, partyC, partyD);
+        assertFalse(used.contains(alliances.indexOf(partyC)));
+        assertFalse(used.contains(alliances.indexOf(partyD)));
+        assertFalse(allied(alliances, partyA, partyC));
+
+        pending.forEach(Runnable::run);
+        ally(alliances, partyA, partyB);
+        assertEquals(used, Set.of(alliances.indexOf(partyA), alliances.indexOf(partyB)));
+        assertTrue(allied(alliances, partyA, partyB));
+        assertFalse(allied(alliances, partyA, partyC));
+    }
+
+    @Test
+    void disbandedPartyLeavesTheRestAllied() {
+        AllianceManager alliances = new AllianceManager(null, LOGGER);
+        ally(alliances, partyA, partyB);
+        ally(alliances, partyB, partyC);
+
+        alliances.onPartyDisbanded(new Party(partyA, UUID.randomUUID()));
+
+        assertEquals(AllianceManager.NO_ALLIANCE, alliances.indexOf(partyA));
+        assertTrue(allied(alliances, partyB, partyC));
+        assertEquals(List.of(partyC), alliances.getAllies(partyB));
+    }
+
+    @Test
+    void alliancesAreWrittenThroughThePersister() {
+        KeyValuePartyStorage storage = new KeyValuePartyStorage(dataFolder, LOGGER, Long.MAX_VALUE);
+        storage.open();
+        PartyPersister persister = new PartyPersister(storage, List::of, partyId -> null, 60_000, 64, LOGGER);
+        persister.start();
+        AllianceManager alliances = new AllianceManager(persister, LOGGER);
+        ally(alliances, partyA, partyB);
+        persister.shutdown(5_000);
+
+        KeyValuePartyStorage reopened = new KeyValuePartyStorage(dataFolder, LOGGER, Long.MAX_VALUE);
+        reopened.open();
+        AllianceManager loaded = new AllianceManager(null, LOGGER);
+        loaded.load(reopened.getAlliances());
+        reopened.close();
+        assertTrue(allied(loaded, partyA, partyB));
+    }
+}
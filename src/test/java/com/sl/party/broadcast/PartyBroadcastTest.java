@@ -0,0 +1,98 @@
+package com.sl.party.broadcast;
+
+import com.hypixel.hytale.protocol.Packet;
+import com.hypixel.hytale.protocol.packets.interface_.ServerMessage;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.io.PacketHandler;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PartyBroadcastTest {
+
+    private final PacketHandler handler = mock(PacketHandler.class);
+    private final PlayerRef player = mock(PlayerRef.class);
+
+    PartyBroadcastTest() {
+        when(player.getUuid()).thenReturn(UUID.randomUUID());
+        when(player.getPacketHandler()).thenReturn(handler);
+    }
+
+    /**
+     * Runs on a fresh thread, since batching stays on for a thread once started
+     */
+    private static void onWorldThread(Runnable task) throws Throwable {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                PartyBroadcast.startBatching();
+                task.run();
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        thread.start();
+        thread.join();
+        if (failure.get() != null) throw failure.get();
+    }
+
+    @Test
+    void sendsRightAwayWithoutBatching() throws InterruptedException {
+        Packet packet = mock(Packet.class);
+        Thread thread = new Thread(() -> PartyBroadcast.send(List.of(player), packet));
+        thread.start();
+        thread.join();
+
+        verify(handler).write(packet);
+    }
+
+    @Test
+    void broadcastsOfOneTickAreWrittenTogether() throws Throwable {
+        Packet broadcast = mock(Packet.class);
+        onWorldThread(() -> {
+            PartyBroadcast.send(List.of(player), broadcast);
+            PartyBroadcast.send(List.of(player), PartyBroadcast.message(Message.raw("You left the party")));
+            verify(handler, never()).write(any(Packet[].class));
+
+            PartyBroadcast.flush();
+        });
+
+        ArgumentCaptor<Packet[]> written = ArgumentCaptor.forClass(Packet[].class);
+        verify(handler).write(written.capture());
+        Packet[] packets = written.getValue();
+        assertEquals(2, packets.length);
+        assertSame(broadcast, packets[0]);
+        assertInstanceOf(ServerMessage.class, packets[1]);
+    }
+
+    @Test
+    void everyFlushStartsEmpty() throws Throwable {
+        Packet first = mock(Packet.class);
+        Packet second = mock(Packet.class);
+        onWorldThread(() -> {
+            PartyBroadcast.send(List.of(player), first);
+            PartyBroadcast.flush();
+            PartyBroadcast.flush();  // Nothing new: nothing written again
+
+            PartyBroadcast.send(List.of(player), second);
+            PartyBroadcast.flush();
+        });
+
+        verify(handler, times(1)).write(first);
+        verify(handler, times(1)).write(second);
+    }
+}
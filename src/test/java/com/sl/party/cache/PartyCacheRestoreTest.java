@@ -0,0 +1,87 @@
+package com.sl.party.cache;
+
+import com.sl.party.model.Party;
+import com.sl.party.storage.KeyValuePartyStorage;
+import com.sl.party.storage.PartyPersister;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Restoring parties from the kv backend while changes of resident parties are still queued
+ * in the persister (i.e. within one flush interval)
+ */
+class PartyCacheRestoreTest {
+
+    private static final Logger LOGGER = Logger.getLogger("SLPartyTest");
+
+    @TempDir
+    Path dataFolder;
+
+    private KeyValuePartyStorage storage;
+    private PartyCache cache;
+    private Party party;
+    private final UUID leaderId = UUID.randomUUID();
+    private final UUID memberId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        // A party that was stored, then evicted and restored in an earlier session
+        KeyValuePartyStorage previous = new KeyValuePartyStorage(dataFolder, LOGGER, Long.MAX_VALUE);
+        previous.open();
+        Party stored = new Party(leaderId);
+        stored.addMember(memberId, "Member");
+        previous.upsert(stored);
+        previous.close();
+
+        storage = new KeyValuePartyStorage(dataFolder, LOGGER, Long.MAX_VALUE);
+        cache = new PartyCache();
+        cache.setStorage(storage);
+        cache.setMaxOfflineParties(0);
+        cache.load();
+        // Never started: every change stays queued, as if the flush interval hadn't passed yet
+        cache.setPersister(new PartyPersister(storage, cache::getParties, cache::getResidentParty,
+            60_000, 64, LOGGER));
+
+        party = cache.getParty(leaderId);
+    }
+
+    @AfterEach
+    void tearDown() {
+        storage.close();
+    }
+
+    @Test
+    void kickedPlayerIsNotRestoredFromStaleRecord() {
+        party.removeMember(memberId);
+
+        assertNull(cache.getParty(memberId));
+        assertSame(party, cache.getParty(leaderId));
+        assertSame(party, cache.getResidentParty(party.getId()));
+        assertFalse(party.isMember(memberId));
+    }
+
+    @Test
+    void disbandedPartyIsNotRestoredFromStaleRecord() {
+        cache.remove(party);
+
+        assertNull(cache.getParty(memberId));
+        assertNull(cache.getParty(leaderId));
+        assertNull(cache.getResidentParty(party.getId()));
+    }
+
+    @Test
+    void restoredPartyIsFoundByEveryMember() {
+        assertSame(party, cache.getParty(memberId));
+        assertSame(party, cache.getByOwner(leaderId));
+    }
+}
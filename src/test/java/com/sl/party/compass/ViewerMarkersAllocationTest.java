@@ -0,0 +1,117 @@
+package com.sl.party.compass;
+
+import com.google.gson.Gson;
+import com.hypixel.hytale.math.vector.Transform;
+import com.hypixel.hytale.math.vector.Vector3d;
+import com.hypixel.hytale.math.vector.Vector3f;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.sl.party.config.PartyConfig;
+import com.sl.party.model.Party;
+import com.sl.party.presence.PresenceRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Allocation harness for the marker path: a 100-member party standing still, every member a viewer.
+ * Counts the bytes the world thread allocates per viewer update with the HotSpot per-thread
+ * allocation counter; the shared per-tick capture of the party is left out, as it runs once per party.
+ * Tagged "allocation": the build runs it in its own task without escape analysis, so allocations the
+ * JIT happens to remove still count.
+ */
+@Tag("allocation")
+class ViewerMarkersAllocationTest {
+
+    private static final int MEMBERS = 100;
+    private static final int WARMUP_TICKS = 2_000;
+    private static final int MEASURED_TICKS = 1_000;
+    // Leaves room for JIT and JDK noise; one object per update would be far above it
+    private static final double MAX_BYTES_PER_UPDATE = 4.0;
+
+    @Test
+    void stationaryPartyAllocatesAlmostNothingPerViewerUpdate() {
+        final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        // Keep-alive resends are periodic, not per update, so they are kept out of the measurement
+        final PartyConfig.Markers settings = new Gson().fromJson("{\"keepAliveMs\": 3600000}", PartyConfig.Markers.class);
+        final World world = mock(World.class);
+        final ViewerMarkers.MarkerSink tracker = (viewRadius, playerChunkX, playerChunkZ, marker) -> {
+        };
+        final PresenceRegistry presences = new PresenceRegistry();
+
+        // Members spread over a 10x10 grid, 80 blocks apart, so every level of detail is used
+        final UUID[] members = new UUID[MEMBERS];
+        final int[] chunkX = new int[MEMBERS];
+        final int[] chunkZ = new int[MEMBERS];
+        Party party = null;
+        for (int i = 0; i < MEMBERS; i++) {
+            members[i] = UUID.randomUUID();
+            if (party == null) {
+                party = new Party(members[i]);
+            } else {
+                party.addMember(members[i], "Member" + i);
+            }
+            party.setMemberName(members[i], "Member" + i);
+
+            final double x = (i % 10) * 80.0;
+            final double z = (i / 10) * 80.0;
+            chunkX[i] = (int) Math.floor(x) >> 5;
+            chunkZ[i] = (int) Math.floor(z) >> 5;
+            final PlayerRef player = mock(PlayerRef.class);
+            when(player.getUuid()).thenReturn(members[i]);
+            when(player.getUsername()).thenReturn("Member" + i);
+            when(player.isValid()).thenReturn(true);
+            when(player.getTransform()).thenReturn(new Transform(new Vector3d(x, 64, z), new Vector3f(0, i * 0.1f, 0)));
+            presences.update(player, world);
+        }
+
+        final ViewerMarkers[] viewers = new ViewerMarkers[MEMBERS];
+        for (int i = 0; i < MEMBERS; i++) {
+            viewers[i] = new ViewerMarkers();
+        }
+        final PartyPositionSnapshot snapshot = PartyPositionSnapshot.current();
+
+        // Warm up: first sends, growing the reused arrays and maps, JIT
+        for (int tick = 0; tick < WARMUP_TICKS; tick++) {
+            updateAll(snapshot, party, world, presences, viewers, members, chunkX, chunkZ, settings, tracker);
+        }
+
+        long allocated = 0;
+        for (int tick = 0; tick < MEASURED_TICKS; tick++) {
+            snapshot.nextTick();
+            final PartyPositionSnapshot.Positions positions = snapshot.get(party, world, presences);
+            final long before = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < MEMBERS; i++) {
+                viewers[i].update(world, members[i], chunkX[i], chunkZ[i], positions, Set.of(), settings, tracker);
+            }
+            allocated += threads.getCurrentThreadAllocatedBytes() - before;
+        }
+
+        final long updates = (long) MEASURED_TICKS * MEMBERS;
+        final double perUpdate = (double) allocated / updates;
+        assertTrue(perUpdate <= MAX_BYTES_PER_UPDATE,
+            perUpdate + " bytes allocated per viewer update (" + allocated + " over " + updates + " updates)");
+    }
+
+    private static void updateAll(PartyPositionSnapshot snapshot, Party party, World world, PresenceRegistry presences,
+                                  ViewerMarkers[] viewers, UUID[] members, int[] chunkX, int[] chunkZ,
+                                  PartyConfig.Markers settings, ViewerMarkers.MarkerSink tracker) {
+        snapshot.nextTick();
+        final PartyPositionSnapshot.Positions positions = snapshot.get(party, world, presences);
+        for (int i = 0; i < viewers.length; i++) {
+            viewers[i].update(world, members[i], chunkX[i], chunkZ[i], positions, Set.of(), settings, tracker);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.sl.party.compass;
+
+import com.google.gson.Gson;
+import com.hypixel.hytale.math.vector.Transform;
+import com.hypixel.hytale.math.vector.Vector3d;
+import com.hypixel.hytale.math.vector.Vector3f;
+import com.hypixel.hytale.protocol.packets.worldmap.MapMarker;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.sl.party.config.PartyConfig;
+import com.sl.party.model.Party;
+import com.sl.party.presence.PresenceRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Markers go through the compass path of the world map tracker on every update
+ */
+class ViewerMarkersTest {
+
+    private final World world = mock(World.class);
+    private final PresenceRegistry presences = new PresenceRegistry();
+    private final PartyConfig.Markers settings = new Gson().fromJson("{\"keepAliveMs\": 3600000}", PartyConfig.Markers.class);
+    private final List<Integer> radii = new ArrayList<>();
+    private final List<MapMarker> submitted = new ArrayList<>();
+    private final ViewerMarkers.MarkerSink tracker = (viewRadius, playerChunkX, playerChunkZ, marker) -> {
+        radii.add(viewRadius);
+        submitted.add(marker);
+    };
+
+    private PlayerRef player(UUID uuid, double x) {
+        final PlayerRef player = mock(PlayerRef.class);
+        when(player.getUuid()).thenReturn(uuid);
+        when(player.getUsername()).thenReturn("Member");
+        when(player.isValid()).thenReturn(true);
+        when(player.getTransform()).thenReturn(new Transform(new Vector3d(x, 64, 0), new Vector3f(0, 0, 0)));
+        return player;
+    }
+
+    private void update(ViewerMarkers viewer, UUID viewerUuid, Party party) {
+        final PartyPositionSnapshot snapshot = PartyPositionSnapshot.current();
+        snapshot.nextTick();
+        submitted.clear();
+        radii.clear();
+        viewer.update(world, viewerUuid, 0, 0, party != null ? snapshot.get(party, world, presences) : null,
+            Set.of(), settings, tracker);
+    }
+
+    @Test
+    void submitsMarkersToTheCompassEveryUpdate() {
+        final UUID viewerUuid = UUID.randomUUID();
+        final UUID memberId = UUID.randomUUID();
+        final Party party = new Party(viewerUuid);
+        party.addMember(memberId, "Member");
+        presences.update(player(viewerUuid, 0), world);
+        final PlayerRef member = player(memberId, 10);
+        presences.update(member, world);
+        final ViewerMarkers viewer = new ViewerMarkers();
+
+        update(viewer, viewerUuid, party);
+        assertEquals(1, submitted.size());
+        assertEquals(List.of(-1), radii);
+        final MapMarker first = submitted.get(0);
+
+        // Standing still: the same marker is submitted again, so it stays shown without a resend
+        update(viewer, viewerUuid, party);
+        assertEquals(List.of(-1), radii);
+        assertSame(first, submitted.get(0));
+
+        // Moved past the threshold: a new marker
+        when(member.getTransform()).thenReturn(new Transform(new Vector3d(20, 64, 0), new Vector3f(0, 0, 0)));
+        presences.update(member, world);
+        update(viewer, viewerUuid, party);
+        assertEquals(1, submitted.size());
+        assertNotSame(first, submitted.get(0));
+
+        // Left the party: nothing is submitted, which makes the tracker remove the marker
+        update(viewer, viewerUuid, null);
+        assertTrue(submitted.isEmpty());
+        assertTrue(viewer.isEmpty());
+    }
+}
@@ -0,0 +1,149 @@
+package com.sl.party.storage;
+
+import com.sl.party.model.Party;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryPartyCodecTest {
+
+    @TempDir
+    Path folder;
+
+    private static Party party(String leaderName, String... memberNames) {
+        UUID leaderId = UUID.randomUUID();
+        Party party = new Party(leaderId);
+        party.setMemberName(leaderId, leaderName);
+        for (String name : memberNames) {
+            party.addMember(UUID.randomUUID(), name);
+        }
+        return party;
+    }
+
+    private Path write(long generation, List<Party> parties) throws IOException {
+        return write(generation, parties, List.of());
+    }
+
+    private Path write(long generation, List<Party> parties, List<List<UUID>> alliances) throws IOException {
+        Path file = folder.resolve("parties.bin");
+        try (FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            BinaryPartyCodec.write(channel, generation, parties, alliances);
+        }
+        return file;
+    }
+
+    private static BinaryPartyCodec.Snapshot read(Path file, boolean parallel) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return BinaryPartyCodec.read(channel, parallel);
+        }
+    }
+
+    private static void assertSameParty(Party expected, Party actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getLeaderId(), actual.getLeaderId());
+        assertEquals(expected.isPublish(), actual.isPublish());
+        assertEquals(expected.getMembers(), actual.getMembers());
+        for (UUID memberId : expected.getMembers()) {
+            assertEquals(expected.getMemberName(memberId), actual.getMemberName(memberId));
+        }
+    }
+
+    @Test
+    void snapshotRoundTrip() throws IOException {
+        Party first = party("Leader", "Anna", "Bj\u00f6rn");
+        first.setPublish(true);
+        Party second = party("Zo\u00eb", "Anna");  // Shared name, stored once in the string table
+        Party unnamed = new Party(UUID.randomUUID());  // Leader without a known name
+
+        BinaryPartyCodec.Snapshot snapshot = read(write(7, List.of(first, second, unnamed)), false);
+
+        assertEquals(7, snapshot.generation());
+        assertEquals(3, snapshot.parties().size());
+        assertSameParty(first, snapshot.parties().get(0));
+        assertSameParty(second, snapshot.parties().get(1));
+        assertSameParty(unnamed, snapshot.parties().get(2));
+        assertNull(snapshot.parties().get(2).getMemberName(unnamed.getLeaderId()));
+    }
+
+    @Test
+    void parallelReadMatchesInput() throws IOException {
+        List<Party> parties = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            parties.add(party("Leader" + i, "Member" + i));
+        }
+        List<List<UUID>> alliances = List.of(List.of(parties.get(0).getId(), parties.get(9_999).getId()));
+
+        BinaryPartyCodec.Snapshot snapshot = read(write(1, parties, alliances), true);
+
+        assertEquals(parties.size(), snapshot.parties().size());
+        for (int i = 0; i < parties.size(); i++) {
+            assertSameParty(parties.get(i), snapshot.parties().get(i));
+        }
+        assertEquals(alliances, snapshot.alliances());
+    }
+
+    @Test
+    void alliancesRoundTrip() throws IOException {
+        Party a = party("A");
+        Party b = party("B");
+        Party c = party("C");
+        List<List<UUID>> alliances = List.of(List.of(a.getId(), b.getId(), c.getId()));
+
+        assertEquals(alliances, read(write(1, List.of(a, b, c), alliances), false).alliances());
+        assertEquals(alliances, BinaryPartyCodec.decodeAlliances(BinaryPartyCodec.encodeAlliances(alliances)));
+        assertEquals(List.of(), read(write(1, List.of(a)), false).alliances());
+    }
+
+    @Test
+    void checksumMismatchIsRejected() throws IOException {
+        Path file = write(1, List.of(party("Leader", "Member")));
+
+        // Flip one byte in the middle of the content
+        long position = Files.size(file) / 2;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, position);
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) (one.get(0) ^ 0x01)}), position);
+        }
+
+        IOException error = assertThrows(IOException.class, () -> read(file, false));
+        assertTrue(error.getMessage().contains("checksum"), error.getMessage());
+    }
+
+    @Test
+    void truncatedSnapshotIsRejected() throws IOException {
+        Path file = write(1, List.of(party("Leader", "Member")));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 5);
+        }
+
+        assertThrows(IOException.class, () -> read(file, false));
+    }
+
+    @Test
+    void recordRoundTrip() {
+        Party party = party("Leader", "Anna", "\u00c9mile");
+        party.setPublish(true);
+
+        byte[] encoded = BinaryPartyCodec.encode(party);
+
+        assertSameParty(party, BinaryPartyCodec.decode(encoded));
+        assertEquals(party.getMembers(), Set.copyOf(BinaryPartyCodec.decodeMembers(encoded)));
+    }
+}
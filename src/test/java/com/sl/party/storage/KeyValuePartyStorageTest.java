@@ -0,0 +1,116 @@
+package com.sl.party.storage;
+
+import com.sl.party.model.Party;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyValuePartyStorageTest {
+
+    private static final Logger LOGGER = Logger.getLogger("SLPartyTest");
+
+    @TempDir
+    Path dataFolder;
+
+    private KeyValuePartyStorage storage() {
+        return new KeyValuePartyStorage(dataFolder, LOGGER, Long.MAX_VALUE);
+    }
+
+    @Test
+    void alliancesAreStoredBesideTheParties() throws IOException {
+        KeyValuePartyStorage storage = storage();
+        storage.open();
+        Party first = new Party(UUID.randomUUID());
+        Party second = new Party(UUID.randomUUID());
+        storage.upsert(first);
+        storage.upsert(second);
+        List<List<UUID>> alliances = List.of(List.of(first.getId(), second.getId()));
+        storage.writeAlliances(alliances);
+        storage.close();
+
+        KeyValuePartyStorage reopened = storage();
+        List<Party> parties = reopened.loadAll();
+        assertEquals(2, parties.size());
+        assertEquals(alliances, reopened.getAlliances());
+        reopened.close();
+    }
+
+    @Test
+    void importsAlliancesFromTheFileBackend() throws IOException {
+        SnapshotPartyStorage fileStorage = new SnapshotPartyStorage(dataFolder, LOGGER, true, Long.MAX_VALUE, false);
+        fileStorage.loadAll();
+        Party first = new Party(UUID.randomUUID());
+        Party second = new Party(UUID.randomUUID());
+        List<List<UUID>> alliances = List.of(List.of(first.getId(), second.getId()));
+        fileStorage.writeAlliances(alliances);
+        fileStorage.save(List.of(first, second));
+        fileStorage.close();
+
+        KeyValuePartyStorage storage = storage();
+        assertEquals(2, storage.loadAll().size());
+        assertEquals(alliances, storage.getAlliances());
+        storage.close();
+    }
+
+    @Test
+    void importLeavesTheFileBackendUntouched() throws IOException {
+        UUID partyId = UUID.randomUUID();
+        UUID leaderId = UUID.randomUUID();
+        String json = "[{\"id\": \"" + partyId + "\", \"leaderId\": \"" + leaderId + "\","
+            + " \"members\": [\"" + leaderId + "\"], \"isPublic\": false}]";
+        Path legacyJson = dataFolder.resolve("parties.json");
+        Files.writeString(legacyJson, json);
+
+        KeyValuePartyStorage storage = storage();
+        List<Party> parties = storage.loadAll();
+        storage.close();
+
+        assertEquals(1, parties.size());
+        assertEquals(partyId, parties.get(0).getId());
+        assertEquals(json, Files.readString(legacyJson));
+        assertFalse(Files.exists(dataFolder.resolve("parties.bin")));
+        assertFalse(Files.exists(dataFolder.resolve("parties.json.migrated")));
+    }
+
+    @Test
+    void failedImportIsRetriedOnNextStart() throws IOException {
+        SnapshotPartyStorage fileStorage = new SnapshotPartyStorage(dataFolder, LOGGER, false, Long.MAX_VALUE, false);
+        fileStorage.loadAll();
+        Party party = new Party(UUID.randomUUID());
+        fileStorage.save(List.of(party));
+        fileStorage.close();
+
+        // An unreadable snapshot fails the import, even though parties.kv gets created
+        Path snapshot = dataFolder.resolve("parties.bin");
+        byte[] good = Files.readAllBytes(snapshot);
+        Files.write(snapshot, Arrays.copyOf(good, good.length / 2));
+        KeyValuePartyStorage storage = storage();
+        assertTrue(storage.loadAll().isEmpty());
+        storage.close();
+        assertTrue(Files.exists(dataFolder.resolve("parties.kv")));
+
+        Files.write(snapshot, good);
+        KeyValuePartyStorage retried = storage();
+        List<Party> parties = retried.loadAll();
+        retried.close();
+        assertEquals(1, parties.size());
+        assertEquals(party.getId(), parties.get(0).getId());
+
+        // The import is complete, the parties no longer depend on parties.bin
+        Files.delete(snapshot);
+        KeyValuePartyStorage third = storage();
+        assertEquals(1, third.loadAll().size());
+        third.close();
+    }
+}
@@ -0,0 +1,186 @@
+package com.sl.party.storage;
+
+import com.sl.party.model.Party;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotPartyStorageTest {
+
+    private static final Logger LOGGER = Logger.getLogger("SLPartyTest");
+
+    @TempDir
+    Path dataFolder;
+
+    private SnapshotPartyStorage storage() {
+        return new SnapshotPartyStorage(dataFolder, LOGGER, true, Long.MAX_VALUE, false);
+    }
+
+    private static Map<UUID, Party> byId(List<Party> parties) {
+        Map<UUID, Party> result = new HashMap<>();
+        for (Party party : parties) {
+            result.put(party.getId(), party);
+        }
+        return result;
+    }
+
+    private void damage(Path file) throws IOException {
+        long position = Files.size(file) / 2;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, position);
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) (one.get(0) ^ 0x01)}), position);
+        }
+    }
+
+    @Test
+    void reloadsSnapshotAndJournal() throws IOException {
+        SnapshotPartyStorage storage = storage();
+        storage.loadAll();
+        Party party = new Party(UUID.randomUUID());
+        storage.save(List.of(party));
+
+        UUID memberId = UUID.randomUUID();
+        party.addMember(memberId, "Member");
+        storage.write(List.of(JournalRecord.memberAdded(party, memberId)), id -> null);
+        storage.close();
+
+        Map<UUID, Party> loaded = byId(storage().loadAll());
+        assertEquals(1, loaded.size());
+        assertTrue(loaded.get(party.getId()).isMember(memberId));
+    }
+
+    @Test
+    void damagedSnapshotFallsBackToPreviousGenerationAndJournals() throws IOException {
+        SnapshotPartyStorage storage = storage();
+        storage.loadAll();
+
+        // Generation 1: one party; its journal creates a second one
+        Party first = new Party(UUID.randomUUID());
+        storage.save(List.of(first));
+        Party second = new Party(UUID.randomUUID());
+        storage.write(List.of(JournalRecord.create(second)), id -> null);
+
+        // Generation 2: both parties; its journal adds a member to the second one
+        storage.save(List.of(first, second));
+        UUID memberId = UUID.randomUUID();
+        second.addMember(memberId, "Member");
+        storage.write(List.of(JournalRecord.memberAdded(second, memberId)), id -> null);
+        storage.close();
+
+        damage(dataFolder.resolve("parties.bin"));
+
+        Map<UUID, Party> loaded = byId(storage().loadAll());
+        assertEquals(2, loaded.size());
+        assertTrue(loaded.containsKey(first.getId()));
+        assertTrue(loaded.get(second.getId()).isMember(memberId));
+        assertTrue(Files.exists(dataFolder.resolve("parties.bin.corrupt")));
+
+        // The recovered state was written as a fresh snapshot right away
+        Map<UUID, Party> again = byId(storage().loadAll());
+        assertEquals(loaded.keySet(), again.keySet());
+        assertTrue(again.get(second.getId()).isMember(memberId));
+    }
+
+    @Test
+    void alliancesSurviveJournalAndSnapshot() throws IOException {
+        SnapshotPartyStorage storage = storage();
+        storage.loadAll();
+        Party first = new Party(UUID.randomUUID());
+        Party second = new Party(UUID.randomUUID());
+        storage.save(List.of(first, second));
+        List<List<UUID>> alliances = List.of(List.of(first.getId(), second.getId()));
+        storage.writeAlliances(alliances);
+        storage.close();
+
+        // From the journal
+        SnapshotPartyStorage reopened = storage();
+        reopened.loadAll();
+        assertEquals(alliances, reopened.getAlliances());
+
+        // From the snapshot, after the journal was folded into it
+        reopened.save(List.of(first, second));
+        reopened.close();
+        SnapshotPartyStorage third = storage();
+        third.loadAll();
+        assertEquals(alliances, third.getAlliances());
+        third.close();
+    }
+
+    @Test
+    void damagedSnapshotWithoutFallbackIsKeptAside() throws IOException {
+        SnapshotPartyStorage storage = storage();
+        storage.loadAll();
+        Party party = new Party(UUID.randomUUID());
+        storage.save(List.of(party));
+        storage.close();
+
+        Path snapshot = dataFolder.resolve("parties.bin");
+        damage(snapshot);
+        byte[] damaged = Files.readAllBytes(snapshot);
+
+        SnapshotPartyStorage reopened = storage();
+        assertTrue(reopened.loadAll().isEmpty());
+        reopened.save(List.of());
+        reopened.close();
+
+        // The next save must not overwrite what is left of the parties
+        Path corrupt = dataFolder.resolve("parties.bin.corrupt");
+        assertTrue(Files.exists(corrupt));
+        assertArrayEquals(damaged, Files.readAllBytes(corrupt));
+    }
+
+    @Test
+    void migratesLegacyJson() throws IOException {
+        UUID partyId = UUID.randomUUID();
+        UUID leaderId = UUID.randomUUID();
+        UUID memberId = UUID.randomUUID();
+        Files.writeString(dataFolder.resolve("parties.json"), "[{"
+            + "\"id\": \"" + partyId + "\", \"leaderId\": \"" + leaderId + "\","
+            + "\"members\": [\"" + leaderId + "\", \"" + memberId + "\"],"
+            + "\"memberNames\": {\"" + leaderId + "\": \"Leader\", \"" + memberId + "\": \"Member\"},"
+            + "\"isPublic\": true}]");
+
+        Map<UUID, Party> loaded = byId(storage().loadAll());
+        Party party = loaded.get(partyId);
+        assertTrue(party.isLeader(leaderId));
+        assertTrue(party.isMember(memberId));
+        assertEquals("Member", party.getMemberName(memberId));
+        assertTrue(party.isPublish());
+        assertTrue(Files.exists(dataFolder.resolve("parties.json.migrated")));
+        assertTrue(Files.exists(dataFolder.resolve("parties.bin")));
+    }
+
+    @Test
+    void tornJournalTailIsIgnored() throws IOException {
+        SnapshotPartyStorage storage = storage();
+        storage.loadAll();
+        Party party = new Party(UUID.randomUUID());
+        storage.save(List.of(party));
+        UUID memberId = UUID.randomUUID();
+        party.addMember(memberId, "Member");
+        storage.write(List.of(JournalRecord.memberAdded(party, memberId)), id -> null);
+        storage.close();
+
+        // Half a record at the end, as after a crash mid-append
+        Files.writeString(dataFolder.resolve("parties.journal"), "{\"op\":\"MEMBER_AD", StandardOpenOption.APPEND);
+
+        Map<UUID, Party> loaded = byId(storage().loadAll());
+        assertTrue(loaded.get(party.getId()).isMember(memberId));
+    }
+}
@@ -0,0 +1,169 @@
+package com.sl.party.storage.kv;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyValueStoreTest {
+
+    @TempDir
+    Path folder;
+
+    private final UUID keyA = UUID.randomUUID();
+    private final UUID keyB = UUID.randomUUID();
+
+    private Path file() {
+        return folder.resolve("test.kv");
+    }
+
+    private KeyValueStore open() throws IOException {
+        KeyValueStore store = new KeyValueStore(file());
+        assertEquals(0, store.open());
+        return store;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void putGetAndDelete() throws IOException {
+        KeyValueStore store = open();
+        store.put(keyA, bytes("a1"));
+        store.put(keyB, bytes("b1"));
+        store.put(keyA, bytes("a2"));
+
+        assertArrayEquals(bytes("a2"), store.get(keyA));
+        assertArrayEquals(bytes("b1"), store.get(keyB));
+        assertEquals(2, store.size());
+
+        store.delete(keyB);
+        assertNull(store.get(keyB));
+        assertFalse(store.contains(keyB));
+        assertEquals(Set.of(keyA), store.keys());
+        store.close();
+    }
+
+    @Test
+    void reopenRebuildsKeyDirectory() throws IOException {
+        KeyValueStore store = open();
+        store.put(keyA, bytes("a1"));
+        store.put(keyB, bytes("b1"));
+        store.put(keyA, bytes("a2"));
+        store.delete(keyB);
+        store.sync();
+        long live = store.getLiveBytes();
+        long garbage = store.getGarbageBytes();
+        store.close();
+
+        KeyValueStore reopened = open();
+        assertArrayEquals(bytes("a2"), reopened.get(keyA));
+        assertNull(reopened.get(keyB));
+        assertEquals(1, reopened.size());
+        assertEquals(live, reopened.getLiveBytes());
+        assertEquals(garbage, reopened.getGarbageBytes());
+        reopened.close();
+    }
+
+    @Test
+    void compactDropsGarbageAndKeepsLiveValues() throws IOException {
+        KeyValueStore store = open();
+        for (int i = 0; i < 100; i++) {
+            store.put(keyA, bytes("a" + i));
+        }
+        store.put(keyB, bytes("b"));
+        store.sync();
+        long sizeBefore = Files.size(file());
+        assertTrue(store.getGarbageBytes() > 0);
+
+        store.compact();
+        assertEquals(0, store.getGarbageBytes());
+        assertTrue(Files.size(file()) < sizeBefore);
+        assertArrayEquals(bytes("a99"), store.get(keyA));
+        assertArrayEquals(bytes("b"), store.get(keyB));
+
+        // Appends after a compaction go to the new file
+        store.put(keyB, bytes("b2"));
+        store.sync();
+        store.close();
+
+        KeyValueStore reopened = open();
+        assertArrayEquals(bytes("a99"), reopened.get(keyA));
+        assertArrayEquals(bytes("b2"), reopened.get(keyB));
+        assertFalse(Files.exists(folder.resolve("test.kv.tmp")));
+        reopened.close();
+    }
+
+    @Test
+    void tornTailIsCutOffOnOpen() throws IOException {
+        KeyValueStore store = open();
+        store.put(keyA, bytes("first"));
+        store.put(keyB, bytes("second"));
+        store.sync();
+        store.close();
+
+        // Crash in the middle of the last append
+        long size = Files.size(file());
+        try (FileChannel channel = FileChannel.open(file(), StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        KeyValueStore reopened = new KeyValueStore(file());
+        assertTrue(reopened.open() > 0);
+        assertArrayEquals(bytes("first"), reopened.get(keyA));
+        assertNull(reopened.get(keyB));
+
+        // The log is usable again after the cut
+        reopened.put(keyB, bytes("again"));
+        reopened.sync();
+        reopened.close();
+        KeyValueStore third = open();
+        assertArrayEquals(bytes("again"), third.get(keyB));
+        third.close();
+    }
+
+    @Test
+    void recordWithBadChecksumEndsTheLog() throws IOException {
+        KeyValueStore store = open();
+        store.put(keyA, bytes("first"));
+        store.put(keyB, bytes("second"));
+        store.sync();
+        store.close();
+
+        // Flip the last byte of the last value
+        long size = Files.size(file());
+        try (FileChannel channel = FileChannel.open(file(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, size - 1);
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) (last.get(0) ^ 0xFF)}), size - 1);
+        }
+
+        KeyValueStore reopened = new KeyValueStore(file());
+        assertTrue(reopened.open() > 0);
+        assertArrayEquals(bytes("first"), reopened.get(keyA));
+        assertNull(reopened.get(keyB));
+        reopened.close();
+    }
+
+    @Test
+    void rejectsForeignFile() throws IOException {
+        Files.write(file(), bytes("not a store"));
+        assertThrows(IOException.class, () -> new KeyValueStore(file()).open());
+    }
+}